@@ -0,0 +1,43 @@
+#!/usr/bin/env bash
+# Side by side load test of the servlet (8082) and reactive (8083) read APIs,
+# see reactive-commands.txt. Needs wrk and the app running with
+# --spring.profiles.active=reactive against a seeded database.
+#
+# ./reactive-compare.sh [username] [tweetId]
+#
+# Every endpoint is loaded on one stack at a time, after a warm-up run, so
+# both see the same database. Prints requests/s and latency percentiles.
+
+USERNAME=${1:-user1}
+TWEET_ID=$2
+THREADS=${THREADS:-4}
+CONNECTIONS=${CONNECTIONS:-200}
+DURATION=${DURATION:-60s}
+WARMUP=${WARMUP:-15s}
+SERVLET=${SERVLET:-http://localhost:8082/api/v1.0}
+REACTIVE=${REACTIVE:-http://localhost:8083/api/v1.0}
+
+ENDPOINTS=("/tweets/all" "/tweets/$USERNAME" "/tweets/user/search/${USERNAME:0:3}")
+if [ -n "$TWEET_ID" ]; then
+	ENDPOINTS+=("/tweets/$USERNAME/$TWEET_ID")
+fi
+
+run() {
+	wrk -t"$THREADS" -c"$CONNECTIONS" -d"$2" --latency -H "loggedInUser: $USERNAME" "$1"
+}
+
+summary() {
+	awk '/^ +50%/ { p50 = $2 } /^ +90%/ { p90 = $2 } /^ +99%/ { p99 = $2 }
+		/Non-2xx/ { errors = $NF } /^Requests\/sec/ { rps = $2 }
+		END { printf "%10s %10s %10s %10s %8s\n", rps, p50, p90, p99, errors ? errors : 0 }'
+}
+
+printf "%-40s %-9s %10s %10s %10s %10s %8s\n" endpoint stack "req/s" p50 p90 p99 non-2xx
+for endpoint in "${ENDPOINTS[@]}"; do
+	for stack in servlet reactive; do
+		if [ "$stack" = servlet ]; then base=$SERVLET; else base=$REACTIVE; fi
+		run "$base$endpoint" "$WARMUP" > /dev/null
+		printf "%-40s %-9s " "$endpoint" "$stack"
+		run "$base$endpoint" "$DURATION" | summary
+	done
+done
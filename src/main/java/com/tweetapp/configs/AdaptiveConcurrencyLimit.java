@@ -0,0 +1,163 @@
+package com.tweetapp.configs;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import com.mongodb.event.CommandFailedEvent;
+import com.mongodb.event.CommandListener;
+import com.mongodb.event.CommandSucceededEvent;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Global limit on write requests in flight, driven by the latency of Mongo
+ * commands (gradient algorithm). Every update interval the average latency
+ * of the interval is compared with a slow moving average of it: while they
+ * are close the limit grows by about sqrt(limit), once the short term
+ * latency rises above tolerance times the long term one the limit shrinks
+ * in proportion, down to half per interval. The limit only grows while
+ * it is actually used, so a quiet period does not leave it far above what
+ * Mongo can take.
+ *
+ * Latency is sampled from every Mongo command of this instance, reads and
+ * writes. Metrics: tweetapp.admission.limit, .inflight and .mongo.latency
+ * (gauges).
+ *
+ * @author Tarun Prajapat
+ */
+@Component
+public class AdaptiveConcurrencyLimit implements CommandListener {
+
+	private final int minLimit;
+
+	private final int maxLimit;
+
+	private final double tolerance;
+
+	private final double smoothing;
+
+	/**
+	 * Weight of one interval in the long term average
+	 */
+	private final double longWindowWeight;
+
+	private final AtomicInteger inFlight = new AtomicInteger();
+
+	private final AtomicInteger maxInFlight = new AtomicInteger();
+
+	private final LongAdder latencyNanos = new LongAdder();
+
+	private final LongAdder samples = new LongAdder();
+
+	private volatile double limit;
+
+	private volatile double longLatency;
+
+	private volatile double shortLatency;
+
+	Logger logger = LoggerFactory.getLogger(AdaptiveConcurrencyLimit.class);
+
+	public AdaptiveConcurrencyLimit(MeterRegistry meterRegistry,
+			@Value("${tweetapp.admission.limit.initial:100}") int initialLimit,
+			@Value("${tweetapp.admission.limit.min:10}") int minLimit,
+			@Value("${tweetapp.admission.limit.max:1000}") int maxLimit,
+			@Value("${tweetapp.admission.limit.tolerance:1.5}") double tolerance,
+			@Value("${tweetapp.admission.limit.smoothing:0.2}") double smoothing,
+			@Value("${tweetapp.admission.limit.long-window:60}") int longWindow) {
+		this.limit = initialLimit;
+		this.minLimit = minLimit;
+		this.maxLimit = maxLimit;
+		this.tolerance = tolerance;
+		this.smoothing = smoothing;
+		this.longWindowWeight = 1.0 / longWindow;
+		Gauge.builder("tweetapp.admission.limit", this, AdaptiveConcurrencyLimit::getLimit).register(meterRegistry);
+		Gauge.builder("tweetapp.admission.inflight", inFlight, AtomicInteger::get).register(meterRegistry);
+		Gauge.builder("tweetapp.admission.mongo.latency", this, current -> current.shortLatency / 1_000_000)
+				.baseUnit("milliseconds").register(meterRegistry);
+	}
+
+	/**
+	 * @return false when the limit is reached; otherwise the caller must call
+	 *         release once the request is done
+	 */
+	public boolean tryAcquire() {
+		while (true) {
+			int current = inFlight.get();
+			if (current >= (int) limit) {
+				return false;
+			}
+			if (inFlight.compareAndSet(current, current + 1)) {
+				maxInFlight.accumulateAndGet(current + 1, Math::max);
+				return true;
+			}
+		}
+	}
+
+	public void release() {
+		inFlight.decrementAndGet();
+	}
+
+	public int getLimit() {
+		return (int) limit;
+	}
+
+	@Override
+	public void commandSucceeded(CommandSucceededEvent event) {
+		record(event.getElapsedTime(TimeUnit.NANOSECONDS));
+	}
+
+	@Override
+	public void commandFailed(CommandFailedEvent event) {
+		record(event.getElapsedTime(TimeUnit.NANOSECONDS));
+	}
+
+	private void record(long nanos) {
+		latencyNanos.add(nanos);
+		samples.increment();
+	}
+
+	/**
+	 * Recomputes the limit from the latency of the last interval. Only the
+	 * scheduler thread writes limit and the averages.
+	 */
+	@Scheduled(fixedDelayString = "${tweetapp.admission.limit.update-interval-ms:1000}")
+	public void update() {
+		long count = samples.sumThenReset();
+		long total = latencyNanos.sumThenReset();
+		int used = maxInFlight.getAndSet(inFlight.get());
+		if (count == 0) {
+			// no Mongo traffic, nothing learnt
+			return;
+		}
+		double latency = (double) total / count;
+		double longTerm = longLatency == 0 ? latency
+				: longLatency * (1 - longWindowWeight) + latency * longWindowWeight;
+		if (longTerm > 2 * latency) {
+			// latency dropped for good, e.g. after an overload, do not wait a whole window to follow
+			longTerm = longTerm * 0.95;
+		}
+		double current = limit;
+		double gradient = Math.max(0.5, Math.min(1.0, tolerance * longTerm / latency));
+		double target = current * gradient + Math.sqrt(current);
+		if (target > current && used < current / 2) {
+			// not enough load to know whether more would be fine
+			target = current;
+		}
+		double next = Math.max(minLimit, Math.min(maxLimit, current * (1 - smoothing) + target * smoothing));
+		shortLatency = latency;
+		longLatency = longTerm;
+		limit = next;
+		if ((int) next != (int) current) {
+			logger.debug("Admission limit {} -> {}, mongo latency {}ms, long term {}ms", (int) current, (int) next,
+					latency / 1_000_000, longTerm / 1_000_000);
+		}
+	}
+}
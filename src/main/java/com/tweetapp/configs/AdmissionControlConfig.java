@@ -0,0 +1,47 @@
+package com.tweetapp.configs;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.mongo.MongoClientSettingsBuilderCustomizer;
+import org.springframework.boot.autoconfigure.security.SecurityProperties;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Registers AdmissionControlFilter and feeds Mongo command latency to
+ * AdaptiveConcurrencyLimit
+ *
+ * @author Tarun Prajapat
+ */
+@Configuration
+public class AdmissionControlConfig {
+
+	/**
+	 * Runs before the security filter chain, so a rejected request costs as
+	 * little as possible
+	 */
+	@Bean
+	public FilterRegistrationBean<AdmissionControlFilter> admissionControlFilter(
+			AdaptiveConcurrencyLimit concurrencyLimit, ObjectMapper objectMapper, MeterRegistry meterRegistry,
+			@Value("${tweetapp.admission.enabled:true}") boolean enabled,
+			@Value("${tweetapp.admission.user.rate-per-second:5}") double ratePerSecond,
+			@Value("${tweetapp.admission.user.burst:20}") int burst,
+			@Value("${tweetapp.admission.user.max-users:100000}") long maxUsers) {
+		FilterRegistrationBean<AdmissionControlFilter> registration = new FilterRegistrationBean<>(
+				new AdmissionControlFilter(concurrencyLimit, objectMapper, meterRegistry, ratePerSecond, burst,
+						maxUsers));
+		registration.addUrlPatterns("/tweets/*");
+		registration.setOrder(SecurityProperties.DEFAULT_FILTER_ORDER - 10);
+		registration.setEnabled(enabled);
+		return registration;
+	}
+
+	@Bean
+	public MongoClientSettingsBuilderCustomizer mongoLatencyListener(AdaptiveConcurrencyLimit concurrencyLimit) {
+		return settings -> settings.addCommandListener(concurrencyLimit);
+	}
+}
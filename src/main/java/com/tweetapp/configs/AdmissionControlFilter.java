@@ -0,0 +1,197 @@
+package com.tweetapp.configs;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.util.AntPathMatcher;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.tweetapp.dto.ErrorResponse;
+import com.tweetapp.utils.TokenBucket;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.util.StringUtils;
+
+/**
+ * Admission control in front of the write endpoints: posting, replying and
+ * liking. Each client gets a token bucket of tweetapp.admission.user.burst
+ * requests refilled at rate-per-second, and all clients together may only
+ * have AdaptiveConcurrencyLimit requests in flight. A request over either is
+ * answered right away, 429 or 503 with Retry-After, before it costs a
+ * handler thread or a Mongo query, so well-behaved users keep their latency
+ * while one client floods or Mongo slows down. Reads are not affected.
+ *
+ * A client is the loggedInUser header every handler takes, or the remote
+ * address when it is missing; never the {username} of the path. The remote
+ * address is the client's, not the load balancer's, thanks to
+ * server.forward-headers-strategy.
+ *
+ * Requests handled asynchronously keep their slot until the async request
+ * completes. Metrics: tweetapp.admission.rejected tagged
+ * reason=rate_limited|overloaded.
+ *
+ * @author Tarun Prajapat
+ */
+public class AdmissionControlFilter extends OncePerRequestFilter {
+
+	private static final List<String[]> WRITE_ENDPOINTS = Arrays.asList(
+			new String[] { "POST", "/tweets/{username}/add" },
+			new String[] { "POST", "/tweets/{username}/reply/{tweetId}" },
+			new String[] { "PUT", "/tweets/{username}/like/{tweetId}" },
+			new String[] { "PUT", "/tweets/{username}/dislike/{tweetId}" },
+			new String[] { "PUT", "/tweets/{username}/likes" });
+
+	private static final String LOGGED_IN_USER = "loggedInUser";
+
+	private final AntPathMatcher pathMatcher = new AntPathMatcher();
+
+	private final AdaptiveConcurrencyLimit concurrencyLimit;
+
+	private final ObjectMapper objectMapper;
+
+	private final double ratePerSecond;
+
+	private final int burst;
+
+	/**
+	 * Idle buckets are full again after burst / rate seconds, dropping them
+	 * after that loses nothing
+	 */
+	private final Cache<String, TokenBucket> buckets;
+
+	private final Counter rateLimited;
+
+	private final Counter overloaded;
+
+	Logger logger = LoggerFactory.getLogger(AdmissionControlFilter.class);
+
+	public AdmissionControlFilter(AdaptiveConcurrencyLimit concurrencyLimit, ObjectMapper objectMapper,
+			MeterRegistry meterRegistry, double ratePerSecond, int burst, long maxUsers) {
+		this.concurrencyLimit = concurrencyLimit;
+		this.objectMapper = objectMapper;
+		this.ratePerSecond = ratePerSecond;
+		this.burst = burst;
+		long refillNanos = (long) (burst / ratePerSecond * 1_000_000_000L);
+		this.buckets = Caffeine.newBuilder().maximumSize(maxUsers)
+				.expireAfterAccess(Math.max(refillNanos, TimeUnit.SECONDS.toNanos(1)), TimeUnit.NANOSECONDS).build();
+		this.rateLimited = meterRegistry.counter("tweetapp.admission.rejected", "reason", "rate_limited");
+		this.overloaded = meterRegistry.counter("tweetapp.admission.rejected", "reason", "overloaded");
+	}
+
+	@Override
+	protected boolean shouldNotFilter(HttpServletRequest request) {
+		return !isWriteEndpoint(request);
+	}
+
+	@Override
+	protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+			throws ServletException, IOException {
+		TokenBucket bucket = buckets.get(clientOf(request),
+				client -> new TokenBucket(ratePerSecond, burst, System.nanoTime()));
+		long waitNanos = bucket.tryAcquire(System.nanoTime());
+		if (waitNanos > 0) {
+			rateLimited.increment();
+			reject(response, HttpStatus.TOO_MANY_REQUESTS, waitNanos, "Too many requests, slow down");
+			return;
+		}
+		if (!concurrencyLimit.tryAcquire()) {
+			overloaded.increment();
+			reject(response, HttpStatus.SERVICE_UNAVAILABLE, TimeUnit.SECONDS.toNanos(1),
+					"Server is busy, try again later");
+			return;
+		}
+		Slot slot = new Slot();
+		try {
+			chain.doFilter(request, response);
+		} finally {
+			if (request.isAsyncStarted()) {
+				// the handler runs on another thread, the slot is held until the response is written
+				request.getAsyncContext().addListener(slot);
+			} else {
+				slot.release();
+			}
+		}
+	}
+
+	private boolean isWriteEndpoint(HttpServletRequest request) {
+		String path = request.getRequestURI().substring(request.getContextPath().length());
+		for (String[] endpoint : WRITE_ENDPOINTS) {
+			if (endpoint[0].equals(request.getMethod()) && pathMatcher.match(endpoint[1], path)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @return key of the caller's token bucket, prefixed so a username never
+	 *         shares a bucket with an address
+	 */
+	private String clientOf(HttpServletRequest request) {
+		String loggedInUser = request.getHeader(LOGGED_IN_USER);
+		return StringUtils.isBlank(loggedInUser) ? "ip:" + request.getRemoteAddr() : "user:" + loggedInUser;
+	}
+
+	private void reject(HttpServletResponse response, HttpStatus status, long waitNanos, String message)
+			throws IOException {
+		long retryAfter = Math.max(1, (waitNanos + 999_999_999L) / 1_000_000_000L);
+		response.setStatus(status.value());
+		response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfter));
+		response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+		objectMapper.writeValue(response.getOutputStream(), new ErrorResponse(message));
+	}
+
+	/**
+	 * One concurrency slot, released exactly once whichever way the request
+	 * ends
+	 */
+	private class Slot implements AsyncListener {
+
+		private final AtomicBoolean released = new AtomicBoolean();
+
+		void release() {
+			if (released.compareAndSet(false, true)) {
+				concurrencyLimit.release();
+			}
+		}
+
+		@Override
+		public void onComplete(AsyncEvent event) {
+			release();
+		}
+
+		@Override
+		public void onTimeout(AsyncEvent event) {
+			release();
+		}
+
+		@Override
+		public void onError(AsyncEvent event) {
+			release();
+		}
+
+		@Override
+		public void onStartAsync(AsyncEvent event) {
+			// still the same request, keep the slot
+		}
+	}
+}
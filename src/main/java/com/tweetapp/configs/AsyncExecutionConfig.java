@@ -0,0 +1,65 @@
+package com.tweetapp.configs;
+
+import java.util.concurrent.ThreadPoolExecutor;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.task.TaskExecutorBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.scheduling.annotation.AsyncAnnotationBeanPostProcessor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+
+/**
+ * Executors that controller handlers run on, so Tomcat threads only parse
+ * requests and write responses. Each pool is bounded in threads and queue;
+ * a full queue rejects the request instead of growing without limit.
+ * Metrics: executor.* tagged name=mongo, among them executor.queued (queue
+ * depth) and executor.active.
+ * 
+ * @author Tarun Prajapat
+ */
+@Configuration
+public class AsyncExecutionConfig {
+
+	/**
+	 * Handlers whose work is Mongo I/O, which is all of them. No handler
+	 * talks to Kafka: writes only append to the tweet's outbox and
+	 * OutboxRelay sends the events from its own thread, so a Kafka executor
+	 * would have nothing to run.
+	 */
+	@Bean
+	public ThreadPoolTaskExecutor mongoExecutor(@Value("${tweetapp.async.mongo.pool-size:64}") int poolSize,
+			@Value("${tweetapp.async.mongo.queue-capacity:2000}") int queueCapacity) {
+		ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+		// with a bounded queue extra threads only start once it is full, so core and max are the same
+		executor.setCorePoolSize(poolSize);
+		executor.setMaxPoolSize(poolSize);
+		executor.setQueueCapacity(queueCapacity);
+		executor.setThreadNamePrefix("mongo-io-");
+		executor.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+		executor.setWaitForTasksToCompleteOnShutdown(true);
+		executor.setAwaitTerminationSeconds(10);
+		return executor;
+	}
+
+	@Bean
+	public MeterBinder mongoExecutorMetrics(ThreadPoolTaskExecutor mongoExecutor) {
+		return registry -> new ExecutorServiceMetrics(mongoExecutor.getThreadPoolExecutor(), "mongo", Tags.empty())
+				.bindTo(registry);
+	}
+
+	/**
+	 * Spring Boot only auto-configures this one when no other Executor bean
+	 * exists; streamed responses and @Async still run on it
+	 */
+	@Lazy
+	@Bean(name = { "applicationTaskExecutor", AsyncAnnotationBeanPostProcessor.DEFAULT_TASK_EXECUTOR_BEAN_NAME })
+	public ThreadPoolTaskExecutor applicationTaskExecutor(TaskExecutorBuilder builder) {
+		return builder.build();
+	}
+}
@@ -0,0 +1,106 @@
+package com.tweetapp.configs;
+
+import java.util.concurrent.Callable;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.async.DeferredResult;
+
+import com.tweetapp.dto.ErrorResponse;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Runs a controller handler on the mongo executor and hands the servlet
+ * thread back to Tomcat right away. The response is 503 with Retry-After
+ * when the executor queue is full or the handler has not finished within
+ * tweetapp.async.mongo.timeout-ms; anything the handler throws becomes a 500.
+ * A handler that timed out keeps running and its write may still commit, so
+ * writes that are not safe to repeat (onMongoWrite) time out with 504 and no
+ * Retry-After instead. Metrics: tweetapp.async.rejected and
+ * tweetapp.async.timeouts.
+ * 
+ * @author Tarun Prajapat
+ */
+@Component
+public class AsyncResponses {
+
+	private final ThreadPoolTaskExecutor mongoExecutor;
+
+	private final long timeoutMs;
+
+	private final Counter rejected;
+
+	private final Counter timeouts;
+
+	Logger logger = LoggerFactory.getLogger(AsyncResponses.class);
+
+	public AsyncResponses(@Qualifier("mongoExecutor") ThreadPoolTaskExecutor mongoExecutor,
+			MeterRegistry meterRegistry, @Value("${tweetapp.async.mongo.timeout-ms:10000}") long timeoutMs) {
+		this.mongoExecutor = mongoExecutor;
+		this.timeoutMs = timeoutMs;
+		this.rejected = meterRegistry.counter("tweetapp.async.rejected", "executor", "mongo");
+		this.timeouts = meterRegistry.counter("tweetapp.async.timeouts", "executor", "mongo");
+	}
+
+	/**
+	 * @return DeferredResult completed with what the handler returns
+	 */
+	public DeferredResult<ResponseEntity<?>> onMongo(Callable<ResponseEntity<?>> handler) {
+		return submit(handler, () -> unavailable("Request timed out"));
+	}
+
+	/**
+	 * For writes a retry would repeat, like posting a tweet: a timeout does
+	 * not invite the client to retry, the write may still go through
+	 *
+	 * @return DeferredResult completed with what the handler returns
+	 */
+	public DeferredResult<ResponseEntity<?>> onMongoWrite(Callable<ResponseEntity<?>> handler) {
+		return submit(handler, () -> new ResponseEntity<>(
+				new ErrorResponse("Request timed out, it may still complete"), HttpStatus.GATEWAY_TIMEOUT));
+	}
+
+	private DeferredResult<ResponseEntity<?>> submit(Callable<ResponseEntity<?>> handler,
+			Supplier<ResponseEntity<?>> onTimeout) {
+		DeferredResult<ResponseEntity<?>> result = new DeferredResult<>(timeoutMs, () -> {
+			timeouts.increment();
+			return onTimeout.get();
+		});
+		try {
+			mongoExecutor.execute(() -> {
+				// timed out while queued, nobody is waiting anymore
+				if (result.isSetOrExpired()) {
+					return;
+				}
+				try {
+					result.setResult(handler.call());
+				} catch (Exception e) {
+					logger.error("Request handler failed", e);
+					result.setResult(new ResponseEntity<>(new ErrorResponse("Application has faced an issue"),
+							HttpStatus.INTERNAL_SERVER_ERROR));
+				}
+			});
+		} catch (TaskRejectedException e) {
+			// never ran, safe to retry even for writes
+			rejected.increment();
+			result.setResult(unavailable("Server is busy, try again later"));
+		}
+		return result;
+	}
+
+	private ResponseEntity<?> unavailable(String message) {
+		return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).header(HttpHeaders.RETRY_AFTER, "1")
+				.body(new ErrorResponse(message));
+	}
+}
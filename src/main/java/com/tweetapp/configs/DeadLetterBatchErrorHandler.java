@@ -0,0 +1,51 @@
+package com.tweetapp.configs;
+
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.springframework.kafka.listener.BatchListenerFailedException;
+import org.springframework.kafka.listener.ContainerAwareBatchErrorHandler;
+import org.springframework.kafka.listener.MessageListenerContainer;
+import org.springframework.kafka.listener.RecoveringBatchErrorHandler;
+import org.springframework.kafka.listener.SeekToCurrentBatchErrorHandler;
+
+/**
+ * Error handler of the batch listeners. A failure the listener pins on one
+ * record (BatchListenerFailedException: undecodable, or rejected by Mongo)
+ * is retried a bounded number of times, then that record goes to the
+ * dead-letter topic and the partition moves on. Any other failure, e.g.
+ * Mongo being unavailable, is not the records' fault: the whole batch is
+ * retried until it goes through, so read models never skip events.
+ *
+ * @author Tarun Prajapat
+ */
+public class DeadLetterBatchErrorHandler implements ContainerAwareBatchErrorHandler {
+
+	private final RecoveringBatchErrorHandler recordFailures;
+
+	private final SeekToCurrentBatchErrorHandler batchFailures;
+
+	public DeadLetterBatchErrorHandler(RecoveringBatchErrorHandler recordFailures,
+			SeekToCurrentBatchErrorHandler batchFailures) {
+		this.recordFailures = recordFailures;
+		this.batchFailures = batchFailures;
+	}
+
+	@Override
+	public void handle(Exception thrownException, ConsumerRecords<?, ?> data, Consumer<?, ?> consumer,
+			MessageListenerContainer container) {
+		if (causedByRecord(thrownException)) {
+			recordFailures.handle(thrownException, data, consumer, container);
+		} else {
+			batchFailures.handle(thrownException, data, consumer, container);
+		}
+	}
+
+	private boolean causedByRecord(Throwable exception) {
+		for (Throwable cause = exception; cause != null; cause = cause.getCause()) {
+			if (cause instanceof BatchListenerFailedException) {
+				return true;
+			}
+		}
+		return false;
+	}
+}
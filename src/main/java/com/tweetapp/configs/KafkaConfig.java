@@ -0,0 +1,84 @@
+package com.tweetapp.configs;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.kafka.KafkaProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.kafka.config.ConcurrentKafkaListenerContainerFactory;
+import org.springframework.kafka.core.DefaultKafkaConsumerFactory;
+import org.springframework.kafka.core.DefaultKafkaProducerFactory;
+import org.springframework.kafka.core.KafkaOperations;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.listener.DeadLetterPublishingRecoverer;
+import org.springframework.kafka.listener.RecoveringBatchErrorHandler;
+import org.springframework.kafka.listener.SeekToCurrentBatchErrorHandler;
+import org.springframework.kafka.support.serializer.ErrorHandlingDeserializer;
+import org.springframework.util.backoff.FixedBackOff;
+
+import com.tweetapp.events.TweetEvent;
+import com.tweetapp.events.TweetEventDeserializer;
+
+/**
+ * Kafka publishing and consuming setup. Producer batching, linger and
+ * compression are set through spring.kafka.producer.*, consumer poll sizes
+ * through spring.kafka.consumer.* in application.properties.
+ * 
+ * @author Tarun Prajapat
+ */
+@Configuration
+public class KafkaConfig {
+
+	/**
+	 * Batch listeners of TweetEvents. Values are decoded through an
+	 * ErrorHandlingDeserializer, so a corrupt record or a legacy text message
+	 * reaches the listener instead of failing the poll; see
+	 * DeadLetterBatchErrorHandler for how failures are retried.
+	 */
+	@Bean
+	public ConcurrentKafkaListenerContainerFactory<String, TweetEvent> tweetEventBatchFactory(
+			KafkaProperties kafkaProperties, KafkaTemplate<String, TweetEvent> kafkaTemplate,
+			@Value("${tweetapp.kafka.consumer.concurrency:1}") int concurrency,
+			@Value("${tweetapp.kafka.consumer.max-attempts:5}") long maxAttempts) {
+		Map<String, Object> consumerProperties = kafkaProperties.buildConsumerProperties();
+		// the configured value-deserializer does the decoding, listeners may still override value.deserializer
+		consumerProperties.putIfAbsent(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, TweetEventDeserializer.class);
+		consumerProperties.put(ErrorHandlingDeserializer.VALUE_DESERIALIZER_CLASS,
+				consumerProperties.get(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG));
+		consumerProperties.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, ErrorHandlingDeserializer.class);
+		ConcurrentKafkaListenerContainerFactory<String, TweetEvent> factory = new ConcurrentKafkaListenerContainerFactory<>();
+		factory.setConsumerFactory(new DefaultKafkaConsumerFactory<>(consumerProperties));
+		factory.setBatchListener(true);
+		factory.setConcurrency(concurrency);
+		RecoveringBatchErrorHandler recordFailures = new RecoveringBatchErrorHandler(
+				deadLetterRecoverer(kafkaProperties, kafkaTemplate), new FixedBackOff(1000L, maxAttempts - 1));
+		SeekToCurrentBatchErrorHandler batchFailures = new SeekToCurrentBatchErrorHandler();
+		batchFailures.setBackOff(new FixedBackOff(1000L, FixedBackOff.UNLIMITED_ATTEMPTS));
+		factory.setBatchErrorHandler(new DeadLetterBatchErrorHandler(recordFailures, batchFailures));
+		return factory;
+	}
+
+	/**
+	 * Publishes a failed record as is to <topic>.DLT, with the failure in its
+	 * headers. Undecodable records are published as their raw bytes.
+	 */
+	private DeadLetterPublishingRecoverer deadLetterRecoverer(KafkaProperties kafkaProperties,
+			KafkaTemplate<String, TweetEvent> kafkaTemplate) {
+		Map<String, Object> producerProperties = kafkaProperties.buildProducerProperties();
+		Map<Class<?>, KafkaOperations<? extends Object, ? extends Object>> templates = new LinkedHashMap<>();
+		templates.put(byte[].class, new KafkaTemplate<>(new DefaultKafkaProducerFactory<>(producerProperties,
+				new StringSerializer(), new ByteArraySerializer())));
+		templates.put(String.class, new KafkaTemplate<>(new DefaultKafkaProducerFactory<>(producerProperties,
+				new StringSerializer(), new StringSerializer())));
+		templates.put(TweetEvent.class, kafkaTemplate);
+		// no partition, so the dead-letter topic may have fewer partitions than the source
+		return new DeadLetterPublishingRecoverer(templates,
+				(record, e) -> new TopicPartition(record.topic() + ".DLT", -1));
+	}
+}
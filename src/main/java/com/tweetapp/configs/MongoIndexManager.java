@@ -0,0 +1,146 @@
+package com.tweetapp.configs;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import javax.annotation.PostConstruct;
+
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.data.domain.Sort.Direction;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.index.IndexInfo;
+import org.springframework.data.mongodb.core.index.PartialIndexFilter;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.stereotype.Component;
+
+import com.tweetapp.dto.Comment;
+import com.tweetapp.dto.Like;
+import com.tweetapp.entities.Tweet;
+import com.tweetapp.entities.TweetTombstone;
+import com.tweetapp.entities.TweetView;
+
+/**
+ * Single place where the indexes our queries rely on are declared. They are
+ * created (or confirmed) before the app starts serving, and the state of every
+ * collection is logged at startup and exposed on /actuator/mongoindexes:
+ * declared indexes that are missing, indexes nobody declared, and indexes
+ * with no recorded use since the mongod started.
+ *
+ * @author Tarun Prajapat
+ */
+@Component
+@Endpoint(id = "mongoindexes")
+public class MongoIndexManager {
+
+	private static final String ID_INDEX = "_id_";
+
+//	Injected MongoTemplate bean
+	@Autowired
+	private MongoTemplate mongoTemplate;
+
+	private final Map<Class<?>, List<Index>> declaredIndexes = new LinkedHashMap<>();
+
+	Logger logger = LoggerFactory.getLogger(MongoIndexManager.class);
+
+	public MongoIndexManager() {
+		// read model timeline: findAllBy, findTimelineAfter, findByCreatedAtAfter, findTimelineBetween
+		declare(TweetView.class,
+				new Index().named("timeline").on("createdAt", Direction.DESC).on("_id", Direction.DESC));
+		// read model user timeline: findByUsername, findUserTimelineAfter
+		declare(TweetView.class, new Index().named("user_timeline").on("username", Direction.ASC)
+				.on("createdAt", Direction.DESC).on("_id", Direction.DESC));
+		// OutboxRelay claims, partial so it only holds tweets with pending events
+		declare(Tweet.class, new Index().named("outbox_pending").on("outboxLease", Direction.ASC)
+				.partial(PartialIndexFilter.of(Criteria.where("outbox.0").exists(true))));
+		// TweetViewProjector tombstones, kept well past any redelivery of the tweet's events
+		declare(TweetTombstone.class,
+				new Index().named("deletedAt_ttl").on("deletedAt", Direction.ASC).expire(7, TimeUnit.DAYS));
+		// one like per user per tweet, and the bulk likeStatus lookup
+		declare(Like.class, new Index().named("tweetId_username").on("tweetId", Direction.ASC)
+				.on("username", Direction.ASC).unique());
+		// BulkLikeWriter reads back the likes it claimed for removal
+		declare(Like.class, new Index().named("unlikeClaim").on("unlikeClaim", Direction.ASC).sparse());
+		// comment pages of a tweet
+		declare(Comment.class, new Index().named("tweetId_createdAt").on("tweetId", Direction.ASC)
+				.on("createdAt", Direction.DESC).on("_id", Direction.DESC));
+	}
+
+	private void declare(Class<?> entity, Index index) {
+		declaredIndexes.computeIfAbsent(entity, key -> new ArrayList<>()).add(index);
+	}
+
+	/**
+	 * Creates every declared index; a no-op for those that already exist
+	 */
+	@PostConstruct
+	public void ensureIndexes() {
+		declaredIndexes.forEach((entity, indexes) -> indexes.forEach(index -> {
+			String created = mongoTemplate.indexOps(entity).ensureIndex(index);
+			logger.debug("Ensured index {} on {}", created, mongoTemplate.getCollectionName(entity));
+		}));
+		report().forEach((collection, findings) -> findings.forEach((finding, names) -> {
+			if (!names.isEmpty()) {
+				logger.warn("Collection {} has {} indexes: {}", collection, finding, names);
+			}
+		}));
+	}
+
+	/**
+	 * @return per collection, the names of missing, undeclared and unused indexes
+	 */
+	@ReadOperation
+	public Map<String, Map<String, List<String>>> report() {
+		Map<String, Map<String, List<String>>> report = new LinkedHashMap<>();
+		declaredIndexes.forEach((entity, indexes) -> {
+			String collection = mongoTemplate.getCollectionName(entity);
+			Set<String> declared = indexes.stream().map(index -> index.getIndexOptions().getString("name"))
+					.collect(Collectors.toSet());
+			Set<String> existing = mongoTemplate.indexOps(entity).getIndexInfo().stream().map(IndexInfo::getName)
+					.collect(Collectors.toSet());
+			Map<String, List<String>> findings = new LinkedHashMap<>();
+			findings.put("missing",
+					declared.stream().filter(name -> !existing.contains(name)).sorted().collect(Collectors.toList()));
+			findings.put("undeclared", existing.stream().filter(name -> !declared.contains(name))
+					.filter(name -> !ID_INDEX.equals(name)).sorted().collect(Collectors.toList()));
+			findings.put("unused", unusedIndexes(collection));
+			report.put(collection, findings);
+		});
+		return report;
+	}
+
+	/**
+	 * @return indexes with zero recorded accesses, from $indexStats
+	 */
+	private List<String> unusedIndexes(String collection) {
+		try {
+			List<String> unused = new ArrayList<>();
+			for (Document stats : mongoTemplate.getCollection(collection)
+					.aggregate(Collections.singletonList(new Document("$indexStats", new Document())))) {
+				Document accesses = stats.get("accesses", Document.class);
+				Number ops = accesses == null ? null : accesses.get("ops", Number.class);
+				String name = stats.getString("name");
+				if (ops != null && ops.longValue() == 0 && !ID_INDEX.equals(name)) {
+					unused.add(name);
+				}
+			}
+			Collections.sort(unused);
+			return unused;
+		} catch (RuntimeException e) {
+			// $indexStats needs the clusterMonitor role, the rest of the report is still useful
+			logger.debug("Could not read $indexStats for {}", collection, e);
+			return Collections.emptyList();
+		}
+	}
+}
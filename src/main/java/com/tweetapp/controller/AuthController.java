@@ -10,13 +10,15 @@ import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.async.DeferredResult;
 
+import com.tweetapp.configs.AsyncResponses;
 import com.tweetapp.dto.AuthenticationRequest;
 import com.tweetapp.dto.AuthenticationResponse;
 import com.tweetapp.dto.NewPassword;
 import com.tweetapp.entities.UserModel;
 import com.tweetapp.exception.UsernameAlreadyExists;
-import com.tweetapp.repositories.UserRepository;
+import com.tweetapp.services.CachedUserLookup;
 import com.tweetapp.services.UserModelService;
 
 import io.swagger.annotations.Api;
@@ -33,9 +35,13 @@ public class AuthController {
 	@Autowired
 	private UserModelService userModelService;
 
-	// Injected UserRespository bean
+	// Injected CachedUserLookup bean
 	@Autowired
-	private UserRepository userRepository;
+	private CachedUserLookup cachedUserLookup;
+
+	// Injected AsyncResponses bean, handlers run on the mongo executor
+	@Autowired
+	private AsyncResponses asyncResponses;
 
 ////  Kafka Configuration
 //	@Autowired
@@ -46,61 +52,67 @@ public class AuthController {
 	/**
 	 * Controller Method to register a new User HTTP Post Request
 	 * 
-	 * @return ResponseEntity
+	 * @return DeferredResult
 	 * 
 	 *         http://localhost:8082/api/v1.0/tweets/register
 	 */
 	@PostMapping("/tweets/register")
-	public ResponseEntity<?> register(@RequestBody UserModel userModel) {
-		try {
-			UserModel savedUser = userModelService.createUser(userModel);
-			return new ResponseEntity<>(savedUser, HttpStatus.CREATED);
-		} catch (UsernameAlreadyExists e) {
-			return new ResponseEntity<>(new AuthenticationResponse("Given userId/email already exists"),
-					HttpStatus.CONFLICT);
-		} catch (Exception e) {
-			return new ResponseEntity<>(new AuthenticationResponse("Application has faced an issue"),
-					HttpStatus.INTERNAL_SERVER_ERROR);
-		}
+	public DeferredResult<ResponseEntity<?>> register(@RequestBody UserModel userModel) {
+		return asyncResponses.onMongo(() -> {
+			try {
+				UserModel savedUser = userModelService.createUser(userModel);
+				return new ResponseEntity<>(savedUser, HttpStatus.CREATED);
+			} catch (UsernameAlreadyExists e) {
+				return new ResponseEntity<>(new AuthenticationResponse("Given userId/email already exists"),
+						HttpStatus.CONFLICT);
+			} catch (Exception e) {
+				return new ResponseEntity<>(new AuthenticationResponse("Application has faced an issue"),
+						HttpStatus.INTERNAL_SERVER_ERROR);
+			}
+		});
 	}
 
 	/**
 	 * Controller Method for user login HTTP Post Request
 	 * 
-	 * @return ResponseEntity
+	 * @return DeferredResult
 	 * 
 	 *         http://localhost:8082/api/v1.0/tweets/login
 	 */
 	@PostMapping("/tweets/login")
-	public ResponseEntity<?> login(@RequestBody AuthenticationRequest authenticationRequest) {
-		String username = authenticationRequest.getUsername();
-		String password = authenticationRequest.getPassword();
-		UserModel checkUser = userRepository.findByUsername(username);
-		if (checkUser.getPassword().equals(password)) {
-			return new ResponseEntity<>(userModelService.findByUsername(username), HttpStatus.OK);
-		} else {
-			return new ResponseEntity<>(new AuthenticationResponse("Bad Credentials " + username),
-					HttpStatus.UNAUTHORIZED);
-		}
+	public DeferredResult<ResponseEntity<?>> login(@RequestBody AuthenticationRequest authenticationRequest) {
+		return asyncResponses.onMongo(() -> {
+			String username = authenticationRequest.getUsername();
+			String password = authenticationRequest.getPassword();
+			UserModel checkUser = cachedUserLookup.findUser(username);
+			if (checkUser.getPassword().equals(password)) {
+				return new ResponseEntity<>(userModelService.findByUsername(username), HttpStatus.OK);
+			} else {
+				return new ResponseEntity<>(new AuthenticationResponse("Bad Credentials " + username),
+						HttpStatus.UNAUTHORIZED);
+			}
+		});
 	}
 
 	/**
 	 * Controller Method for user password reset HTTP Post Request
 	 * 
-	 * @return ResponseEntity
+	 * @return DeferredResult
 	 * 
 	 *         http://localhost:8082/api/v1.0/tweets/ram/forgot
 	 */
 	@PutMapping(value = "/tweets/{username}/forgot")
-	public ResponseEntity<?> changePassword(@PathVariable("username") String username,
+	public DeferredResult<ResponseEntity<?>> changePassword(@PathVariable("username") String username,
 			@RequestBody NewPassword newPassword) {
-		try {
-			return new ResponseEntity<>(
-					userModelService.changePassword(username, newPassword.getNewPassword(), newPassword.getContact()),
-					HttpStatus.OK);
-		} catch (Exception e) {
-			return new ResponseEntity<>(new AuthenticationResponse("Unable to change password"),
-					HttpStatus.INTERNAL_SERVER_ERROR);
-		}
+		return asyncResponses.onMongo(() -> {
+			try {
+				return new ResponseEntity<>(
+						userModelService.changePassword(username, newPassword.getNewPassword(), newPassword.getContact()),
+						HttpStatus.OK);
+			} catch (Exception e) {
+				return new ResponseEntity<>(new AuthenticationResponse("Unable to change password"),
+						HttpStatus.INTERNAL_SERVER_ERROR);
+			}
+		});
 	}
 }
@@ -1,9 +1,13 @@
 package com.tweetapp.controller;
 
+import java.time.Instant;
+import java.util.List;
+
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
-import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.web.bind.annotation.CrossOrigin;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -12,12 +16,23 @@ import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tweetapp.configs.AsyncResponses;
 import com.tweetapp.dto.ErrorResponse;
+import com.tweetapp.dto.LikeOperation;
 import com.tweetapp.dto.Reply;
+import com.tweetapp.dto.TrendingResponse;
 import com.tweetapp.dto.TweetUpdate;
 import com.tweetapp.entities.Tweet;
+import com.tweetapp.events.LiveFeedBroadcaster;
+import com.tweetapp.exception.BatchTooLargeException;
+import com.tweetapp.exception.InvalidCursorException;
 import com.tweetapp.exception.InvalidUsernameException;
 import com.tweetapp.exception.TweetNotFoundException;
 import com.tweetapp.services.TweetService;
@@ -36,200 +51,441 @@ public class TweetController {
 	@Autowired
 	private TweetService tweetService;
 
-////  Kafka Configuration
+//	Injected LiveFeedBroadcaster bean
+	@Autowired
+	private LiveFeedBroadcaster liveFeedBroadcaster;
+
+//	Injected AsyncResponses bean, handlers run on the mongo executor
 	@Autowired
-	private KafkaTemplate<String, String> kafkaTemplate;
-//	
-////	Kafka Topic Name
-    private static final String KAFKA_TOPIC = "tweets";
+	private AsyncResponses asyncResponses;
+
+//	Injected ObjectMapper bean
+	@Autowired
+	private ObjectMapper objectMapper;
 
 	/**
 	 * Controller Method to get all tweets HTTP GET Request
 	 * 
-	 * @return ResponseEntity
+	 * @return DeferredResult
 	 * 
 	 *         http://localhost:8082/api/v1.0/tweets/all
 	 */
 	@GetMapping(value = "/tweets/all")
-	public ResponseEntity<?> getAllTweets(@RequestHeader(value = "loggedInUser") String loggedInUser) {
-		try {
-			return new ResponseEntity<>(tweetService.getAllTweets(loggedInUser), HttpStatus.OK);
-		} catch (Exception e) {
-			return new ResponseEntity<>(new ErrorResponse("Application has faced an issue"),
-					HttpStatus.INTERNAL_SERVER_ERROR);
+	public DeferredResult<ResponseEntity<?>> getAllTweets(@RequestHeader(value = "loggedInUser") String loggedInUser) {
+		return asyncResponses.onMongo(() -> {
+			try {
+				return new ResponseEntity<>(tweetService.getAllTweets(loggedInUser), HttpStatus.OK);
+			} catch (Exception e) {
+				return new ResponseEntity<>(new ErrorResponse("Application has faced an issue"),
+						HttpStatus.INTERNAL_SERVER_ERROR);
+			}
+		});
+	}
+
+	/**
+	 * Controller Method to stream all tweets as NDJSON HTTP GET Request, selected
+	 * with Accept: application/x-ndjson. Not capped, items are written as they
+	 * are read.
+	 * 
+	 * @return ResponseEntity
+	 * 
+	 *         http://localhost:8082/api/v1.0/tweets/all
+	 */
+	@GetMapping(value = "/tweets/all", produces = MediaType.APPLICATION_NDJSON_VALUE)
+	public ResponseEntity<StreamingResponseBody> streamAllTweets(
+			@RequestHeader(value = "loggedInUser") String loggedInUser) {
+		return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON)
+				.body(tweetService.streamAllTweets(loggedInUser));
+	}
+
+	/**
+	 * Controller Method to get one page of the timeline HTTP GET Request
+	 * 
+	 * @return DeferredResult
+	 * 
+	 *         http://localhost:8082/api/v1.0/tweets/timeline?limit=20&after=MTYyMDAwMDAwMDAwMDphYmM
+	 *         http://localhost:8082/api/v1.0/tweets/timeline?since=2021-05-01T10:15:30Z
+	 */
+	@GetMapping(value = "/tweets/timeline")
+	public DeferredResult<ResponseEntity<?>> getTimeline(@RequestHeader(value = "loggedInUser") String loggedInUser,
+			@RequestParam(value = "after", required = false) String after,
+			@RequestParam(value = "limit", required = false) Integer limit,
+			@RequestParam(value = "since", required = false) Instant since) {
+		return asyncResponses.onMongo(() -> {
+			try {
+				return new ResponseEntity<>(tweetService.getTimeline(loggedInUser, after, limit, since), HttpStatus.OK);
+			} catch (InvalidCursorException e) {
+				return new ResponseEntity<>(new ErrorResponse("Invalid cursor received"), HttpStatus.BAD_REQUEST);
+			} catch (Exception e) {
+				return new ResponseEntity<>(new ErrorResponse("Application has faced an issue"),
+						HttpStatus.INTERNAL_SERVER_ERROR);
+			}
+		});
+	}
+
+	/**
+	 * Controller Method to follow new tweets, like counts and comment counts
+	 * as Server-Sent Events instead of polling /tweets/all. Events are named
+	 * tweet, likes and comments; a comment line is sent as heartbeat.
+	 * 
+	 * @return ResponseEntity
+	 * 
+	 *         http://localhost:8082/api/v1.0/tweets/stream
+	 */
+	@GetMapping(value = "/tweets/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+	public ResponseEntity<SseEmitter> streamTweets() {
+		SseEmitter emitter = liveFeedBroadcaster.connect();
+		if (emitter == null) {
+			log.warn("Live feed connection refused, instance is at its connection limit");
+			return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).header(HttpHeaders.RETRY_AFTER, "30").build();
 		}
+		return ResponseEntity.ok(emitter);
 	}
 
 	/**
-	 * Method to get all tweets of a user HTTP GET Mapping
+	 * Controller Method to search tweet text HTTP GET Request
+	 * 
+	 * @return DeferredResult
+	 * 
+	 *         http://localhost:8082/api/v1.0/tweets/search?q=spring%20boot&limit=20
+	 */
+	@GetMapping(value = "/tweets/search")
+	public DeferredResult<ResponseEntity<?>> searchTweets(@RequestHeader(value = "loggedInUser") String loggedInUser,
+			@RequestParam(value = "q") String query, @RequestParam(value = "after", required = false) String after,
+			@RequestParam(value = "limit", required = false) Integer limit) {
+		return asyncResponses.onMongo(() -> {
+			try {
+				return new ResponseEntity<>(tweetService.searchTweets(query, loggedInUser, after, limit), HttpStatus.OK);
+			} catch (InvalidCursorException e) {
+				return new ResponseEntity<>(new ErrorResponse("Invalid cursor received"), HttpStatus.BAD_REQUEST);
+			} catch (Exception e) {
+				return new ResponseEntity<>(new ErrorResponse("Application has faced an issue"),
+						HttpStatus.INTERNAL_SERVER_ERROR);
+			}
+		});
+	}
+
+	/**
+	 * Controller Method to get many tweets by id in one call HTTP GET Request
+	 * 
+	 * @return DeferredResult
+	 * 
+	 *         http://localhost:8082/api/v1.0/tweets/batch?ids=ibe2226137b37328,ibe2226137b37329
+	 */
+	@GetMapping(value = "/tweets/batch")
+	public DeferredResult<ResponseEntity<?>> getTweets(@RequestHeader(value = "loggedInUser") String loggedInUser,
+			@RequestParam(value = "ids") List<String> tweetIds) {
+		return asyncResponses.onMongo(() -> {
+			try {
+				return new ResponseEntity<>(tweetService.getTweets(tweetIds, loggedInUser), HttpStatus.OK);
+			} catch (BatchTooLargeException e) {
+				return new ResponseEntity<>(new ErrorResponse(e.getMessage()), HttpStatus.BAD_REQUEST);
+			} catch (Exception e) {
+				log.error("{} has encountered server error while fetching a batch of tweets.", loggedInUser, e);
+				return new ResponseEntity<>(new ErrorResponse("Application has faced an issue"),
+						HttpStatus.INTERNAL_SERVER_ERROR);
+			}
+		});
+	}
+
+	/**
+	 * Controller Method to get trending hashtags and tweets HTTP GET Request
 	 * 
 	 * @return ResponseEntity
 	 * 
+	 *         http://localhost:8082/api/v1.0/tweets/trending?window=5m
+	 */
+	@GetMapping(value = "/tweets/trending")
+	public ResponseEntity<?> getTrending(@RequestParam(value = "window", defaultValue = "1h") String window) {
+		TrendingResponse trending = tweetService.getTrending(window);
+		if (trending == null) {
+			return new ResponseEntity<>(new ErrorResponse("Invalid window received, use 5m, 1h or 24h"),
+					HttpStatus.BAD_REQUEST);
+		}
+		return new ResponseEntity<>(trending, HttpStatus.OK);
+	}
+
+	/**
+	 * Method to get all tweets of a user HTTP GET Mapping
+	 * 
+	 * @return DeferredResult
+	 * 
 	 *         http://localhost:8082/api/v1.0/tweets/ram
 	 */
 	@GetMapping(value = "/tweets/{username}")
-	public ResponseEntity<?> getUserTweets(@PathVariable("username") String username,
+	public DeferredResult<ResponseEntity<?>> getUserTweets(@PathVariable("username") String username,
+			@RequestHeader(value = "loggedInUser") String loggedInUser) {
+		return asyncResponses.onMongo(() -> {
+			try {
+				return new ResponseEntity<>(tweetService.getUserTweets(username, loggedInUser), HttpStatus.OK);
+			} catch (InvalidUsernameException e) {
+				return new ResponseEntity<>(new ErrorResponse("Invalid User param received"),
+						HttpStatus.UNPROCESSABLE_ENTITY);
+			} catch (Exception e) {
+				return new ResponseEntity<>(new ErrorResponse("Application has faced an issue"),
+						HttpStatus.INTERNAL_SERVER_ERROR);
+			}
+		});
+	}
+
+	/**
+	 * Method to stream all tweets of a user as NDJSON HTTP GET Mapping, selected
+	 * with Accept: application/x-ndjson
+	 * 
+	 * @return ResponseEntity
+	 * 
+	 *         http://localhost:8082/api/v1.0/tweets/ram
+	 */
+	@GetMapping(value = "/tweets/{username}", produces = MediaType.APPLICATION_NDJSON_VALUE)
+	public ResponseEntity<StreamingResponseBody> streamUserTweets(@PathVariable("username") String username,
 			@RequestHeader(value = "loggedInUser") String loggedInUser) {
 		try {
-			return new ResponseEntity<>(tweetService.getUserTweets(username, loggedInUser), HttpStatus.OK);
+			return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON)
+					.body(tweetService.streamUserTweets(username, loggedInUser));
 		} catch (InvalidUsernameException e) {
-			return new ResponseEntity<>(new ErrorResponse("Invalid User param received"),
-					HttpStatus.UNPROCESSABLE_ENTITY);
-		} catch (Exception e) {
-			return new ResponseEntity<>(new ErrorResponse("Application has faced an issue"),
-					HttpStatus.INTERNAL_SERVER_ERROR);
+			// only a StreamingResponseBody is handled here, so the error body is written by hand
+			ErrorResponse error = new ErrorResponse("Invalid User param received");
+			return ResponseEntity.status(HttpStatus.UNPROCESSABLE_ENTITY).contentType(MediaType.APPLICATION_JSON)
+					.body(out -> objectMapper.writeValue(out, error));
 		}
 	}
 
+	/**
+	 * Method to get one page of a user's tweets HTTP GET Mapping
+	 * 
+	 * @return DeferredResult
+	 * 
+	 *         http://localhost:8082/api/v1.0/tweets/ram/timeline?limit=20
+	 */
+	@GetMapping(value = "/tweets/{username}/timeline")
+	public DeferredResult<ResponseEntity<?>> getUserTimeline(@PathVariable("username") String username,
+			@RequestHeader(value = "loggedInUser") String loggedInUser,
+			@RequestParam(value = "after", required = false) String after,
+			@RequestParam(value = "limit", required = false) Integer limit) {
+		return asyncResponses.onMongo(() -> {
+			try {
+				return new ResponseEntity<>(tweetService.getUserTimeline(username, loggedInUser, after, limit),
+						HttpStatus.OK);
+			} catch (InvalidUsernameException e) {
+				return new ResponseEntity<>(new ErrorResponse("Invalid User param received"),
+						HttpStatus.UNPROCESSABLE_ENTITY);
+			} catch (InvalidCursorException e) {
+				return new ResponseEntity<>(new ErrorResponse("Invalid cursor received"), HttpStatus.BAD_REQUEST);
+			} catch (Exception e) {
+				return new ResponseEntity<>(new ErrorResponse("Application has faced an issue"),
+						HttpStatus.INTERNAL_SERVER_ERROR);
+			}
+		});
+	}
+
 	/**
 	 * Controller method to post a new tweet HTTP POST Mapping
 	 * 
-	 * @return ResponseEntity
+	 * @return DeferredResult
 	 * 
 	 *         http://localhost:8082/api/v1.0/tweets/ram/add
 	 */
 	@PostMapping(value = "/tweets/{username}/add")
-	public ResponseEntity<?> postNewTweet(@PathVariable("username") String username, @RequestBody Tweet newTweet) {
-//		log.info("posting tweet message sent to: " + KAFKA_TOPIC);
-		return new ResponseEntity<>(tweetService.postNewTweet(username, newTweet), HttpStatus.CREATED);
+	public DeferredResult<ResponseEntity<?>> postNewTweet(@PathVariable("username") String username,
+			@RequestBody Tweet newTweet) {
+		return asyncResponses.onMongoWrite(() -> {
+//			log.info("posting tweet message sent to: " + KAFKA_TOPIC);
+			return new ResponseEntity<>(tweetService.postNewTweet(username, newTweet), HttpStatus.CREATED);
+		});
 	}
 
 	/**
 	 * Controller method to get tweet and its details HTTP GET Mapping
 	 * 
-	 * @return ResponseEntity
+	 * @return DeferredResult
 	 * 
 	 *         http://localhost:8082/api/v1.0/tweets/ram/ibe2226137b37328
 	 */
 	@GetMapping(value = "/tweets/{username}/{tweetId}")
-	public ResponseEntity<?> getTweetDeatils(@PathVariable("username") String username,
+	public DeferredResult<ResponseEntity<?>> getTweetDeatils(@PathVariable("username") String username,
 			@PathVariable("tweetId") String tweetId) {
-		try {
-//			kafkaTemplate.send(KAFKA_TOPIC, username + " is fetching a tweet and it's details.");
-			return new ResponseEntity<>(tweetService.getTweet(tweetId, username), HttpStatus.OK);
-		} catch (Exception e) {
-		kafkaTemplate.send(KAFKA_TOPIC,
-					username + " is fetching a tweet and its details but encountered server error.");
-			return new ResponseEntity<>(new ErrorResponse(e.getMessage()), HttpStatus.INTERNAL_SERVER_ERROR);
-		}
+		return asyncResponses.onMongo(() -> {
+			try {
+//				kafkaTemplate.send(KAFKA_TOPIC, username + " is fetching a tweet and it's details.");
+				return new ResponseEntity<>(tweetService.getTweet(tweetId, username), HttpStatus.OK);
+			} catch (Exception e) {
+				log.error("{} is fetching a tweet and its details but encountered server error.", username, e);
+				return new ResponseEntity<>(new ErrorResponse(e.getMessage()), HttpStatus.INTERNAL_SERVER_ERROR);
+			}
+		});
+	}
+
+	/**
+	 * Controller method to page through the comments of a tweet HTTP GET Mapping
+	 * 
+	 * @return DeferredResult
+	 * 
+	 *         http://localhost:8082/api/v1.0/tweets/ram/ibe2226137b37328/comments?limit=20
+	 */
+	@GetMapping(value = "/tweets/{username}/{tweetId}/comments")
+	public DeferredResult<ResponseEntity<?>> getTweetComments(@PathVariable("username") String username,
+			@PathVariable("tweetId") String tweetId, @RequestParam(value = "after", required = false) String after,
+			@RequestParam(value = "limit", required = false) Integer limit) {
+		return asyncResponses.onMongo(() -> {
+			try {
+				return new ResponseEntity<>(tweetService.getComments(tweetId, after, limit), HttpStatus.OK);
+			} catch (InvalidCursorException e) {
+				return new ResponseEntity<>(new ErrorResponse("Invalid cursor received"), HttpStatus.BAD_REQUEST);
+			} catch (TweetNotFoundException e) {
+				return new ResponseEntity<>(new ErrorResponse("Given tweetId cannot be found"), HttpStatus.NOT_FOUND);
+			} catch (Exception e) {
+				return new ResponseEntity<>(new ErrorResponse("Application has faced an issue"),
+						HttpStatus.INTERNAL_SERVER_ERROR);
+			}
+		});
 	}
 
 	/**
 	 * Controller method to update an existing tweet HTTP PUT Mapping
 	 * 
-	 * @return ResponseEntity
+	 * @return DeferredResult
 	 * 
 	 *         http://localhost:8082/api/v1.0/tweets/ram/update
 	 */
 	@PutMapping(value = "/tweets/{username}/update")
-	public ResponseEntity<?> updateTweet(@PathVariable("username") String username,
+	public DeferredResult<ResponseEntity<?>> updateTweet(@PathVariable("username") String username,
 			@RequestBody TweetUpdate tweetUpdate) {
-		try {
-//			kafkaTemplate.send(KAFKA_TOPIC, username + " has updated a tweet.");
-			return new ResponseEntity<>(
-					tweetService.updateTweet(username, tweetUpdate.getTweetId(), tweetUpdate.getTweetText()),
-					HttpStatus.OK);
-		} catch (TweetNotFoundException e) {
-			kafkaTemplate.send(KAFKA_TOPIC, username + " has encountered an error while updating a tweet.");
-			return new ResponseEntity<>(new ErrorResponse("Given tweetId cannot be found"), HttpStatus.NOT_FOUND);
-		} catch (Exception e) {
-			kafkaTemplate.send(KAFKA_TOPIC, username + " has encountered server error while updating a tweet.");
-			return new ResponseEntity<>(new ErrorResponse("Application has faced an issue"),
-					HttpStatus.INTERNAL_SERVER_ERROR);
-		}
+		return asyncResponses.onMongo(() -> {
+			try {
+//				kafkaTemplate.send(KAFKA_TOPIC, username + " has updated a tweet.");
+				return new ResponseEntity<>(
+						tweetService.updateTweet(username, tweetUpdate.getTweetId(), tweetUpdate.getTweetText()),
+						HttpStatus.OK);
+			} catch (TweetNotFoundException e) {
+				log.warn("{} has encountered an error while updating a tweet.", username);
+				return new ResponseEntity<>(new ErrorResponse("Given tweetId cannot be found"), HttpStatus.NOT_FOUND);
+			} catch (Exception e) {
+				log.error("{} has encountered server error while updating a tweet.", username, e);
+				return new ResponseEntity<>(new ErrorResponse("Application has faced an issue"),
+						HttpStatus.INTERNAL_SERVER_ERROR);
+			}
+		});
 	}
 
 	/**
 	 * Controller method to delete an existing tweet HTTP DELETE Mapping
 	 * 
-	 * @return ResponseEntity
+	 * @return DeferredResult
 	 * 
 	 *         http://localhost:8082/api/v1.0/tweets/ram/delete
 	 */
 	@DeleteMapping(value = "/tweets/{username}/delete")
-	public ResponseEntity<?> deleteTweet(@PathVariable("username") String username,
+	public DeferredResult<ResponseEntity<?>> deleteTweet(@PathVariable("username") String username,
 			@RequestHeader(value = "tweetId") String tweetId) {
-		try {
-			kafkaTemplate.send(KAFKA_TOPIC, username + " has deleted a tweet.");
-			return new ResponseEntity<>(tweetService.deleteTweet(tweetId), HttpStatus.OK);
-		} catch (TweetNotFoundException e) {
-			kafkaTemplate.send(KAFKA_TOPIC, username + " has encounterd an error while deleting a tweet");
-			return new ResponseEntity<>(new ErrorResponse("Given tweetId cannot be found"), HttpStatus.NOT_FOUND);
-		} catch (Exception e) {
-			kafkaTemplate.send(KAFKA_TOPIC, username + " has encounterd a  server error while deleting a tweet");
-			return new ResponseEntity<>(new ErrorResponse("Application has faced an issue"),
-					HttpStatus.INTERNAL_SERVER_ERROR);
-		}
+		return asyncResponses.onMongo(() -> {
+			try {
+				return new ResponseEntity<>(tweetService.deleteTweet(tweetId), HttpStatus.OK);
+			} catch (TweetNotFoundException e) {
+				log.warn("{} has encounterd an error while deleting a tweet", username);
+				return new ResponseEntity<>(new ErrorResponse("Given tweetId cannot be found"), HttpStatus.NOT_FOUND);
+			} catch (Exception e) {
+				log.error("{} has encounterd a  server error while deleting a tweet", username, e);
+				return new ResponseEntity<>(new ErrorResponse("Application has faced an issue"),
+						HttpStatus.INTERNAL_SERVER_ERROR);
+			}
+		});
 	}
 
 	/**
 	 * Controller method to like an existing tweet HTTP PUT Mapping
 	 * 
-	 * @return ResponseEntity
+	 * @return DeferredResult
 	 * 
 	 *         http://localhost:8082/api/v1.0/tweets/ram/like/ibe2226137b37328
 	 */
 	@PutMapping(value = "/tweets/{username}/like/{tweetId}")
-	public ResponseEntity<?> likeATweet(@PathVariable("username") String username,
+	public DeferredResult<ResponseEntity<?>> likeATweet(@PathVariable("username") String username,
 			@PathVariable(value = "tweetId") String tweetId) {
-		try {
-			kafkaTemplate.send(KAFKA_TOPIC, username + " liked a tweet.");
-			return new ResponseEntity<>(tweetService.likeTweet(username, tweetId), HttpStatus.OK);
-		} catch (TweetNotFoundException e) {
-			kafkaTemplate.send(KAFKA_TOPIC, username + " has encounterd an error while liking a tweet");
-			return new ResponseEntity<>(new ErrorResponse("Given tweetId cannot be found"), HttpStatus.NOT_FOUND);
-		} catch (Exception e) {
-			kafkaTemplate.send(KAFKA_TOPIC, username + " has encounterd a server error while liking a tweet");
-			return new ResponseEntity<>(new ErrorResponse("Application has faced an issue"),
-					HttpStatus.INTERNAL_SERVER_ERROR);
-		}
+		return asyncResponses.onMongo(() -> {
+			try {
+				return new ResponseEntity<>(tweetService.likeTweet(username, tweetId), HttpStatus.OK);
+			} catch (TweetNotFoundException e) {
+				log.warn("{} has encounterd an error while liking a tweet", username);
+				return new ResponseEntity<>(new ErrorResponse("Given tweetId cannot be found"), HttpStatus.NOT_FOUND);
+			} catch (Exception e) {
+				log.error("{} has encounterd a server error while liking a tweet", username, e);
+				return new ResponseEntity<>(new ErrorResponse("Application has faced an issue"),
+						HttpStatus.INTERNAL_SERVER_ERROR);
+			}
+		});
 	}
 
 	/**
 	 * Controller method to Dislike an existing tweet HTTP GUT Mapping
 	 * 
-	 * @return ResponseEntity
+	 * @return DeferredResult
 	 * 
 	 *         http://localhost:8082/api/v1.0/tweets/ram/dislike/ibe2226137b37328
 	 */
 	@PutMapping(value = "/tweets/{username}/dislike/{tweetId}")
-	public ResponseEntity<?> dislikeATweet(@PathVariable("username") String username,
+	public DeferredResult<ResponseEntity<?>> dislikeATweet(@PathVariable("username") String username,
 			@PathVariable(value = "tweetId") String tweetId) {
-		try {
-			kafkaTemplate.send(KAFKA_TOPIC, username + " disliked a tweet");
-			return new ResponseEntity<>(tweetService.dislikeTweet(username, tweetId), HttpStatus.OK);
-		} catch (TweetNotFoundException e) {
-			kafkaTemplate.send(KAFKA_TOPIC, username + " has encounterd an error while disliking a tweet");
-			return new ResponseEntity<>(new ErrorResponse("Given tweetId cannot be found"), HttpStatus.NOT_FOUND);
-		} catch (Exception e) {
-			kafkaTemplate.send(KAFKA_TOPIC, username + " has encounterd a server error while deleting a tweet");
-			return new ResponseEntity<>(new ErrorResponse("Application has faced an issue"),
-					HttpStatus.INTERNAL_SERVER_ERROR);
-		}
+		return asyncResponses.onMongo(() -> {
+			try {
+				return new ResponseEntity<>(tweetService.dislikeTweet(username, tweetId), HttpStatus.OK);
+			} catch (TweetNotFoundException e) {
+				log.warn("{} has encounterd an error while disliking a tweet", username);
+				return new ResponseEntity<>(new ErrorResponse("Given tweetId cannot be found"), HttpStatus.NOT_FOUND);
+			} catch (Exception e) {
+				log.error("{} has encounterd a server error while disliking a tweet", username, e);
+				return new ResponseEntity<>(new ErrorResponse("Application has faced an issue"),
+						HttpStatus.INTERNAL_SERVER_ERROR);
+			}
+		});
+	}
+
+	/**
+	 * Controller method to like and unlike many tweets in one call HTTP PUT
+	 * Mapping, body is a list of { "tweetId": "...", "like": true|false }
+	 * 
+	 * @return DeferredResult
+	 * 
+	 *         http://localhost:8082/api/v1.0/tweets/ram/likes
+	 */
+	@PutMapping(value = "/tweets/{username}/likes")
+	public DeferredResult<ResponseEntity<?>> likeTweets(@PathVariable("username") String username,
+			@RequestBody List<LikeOperation> operations) {
+		return asyncResponses.onMongo(() -> {
+			try {
+				return new ResponseEntity<>(tweetService.likeTweets(username, operations), HttpStatus.OK);
+			} catch (BatchTooLargeException e) {
+				return new ResponseEntity<>(new ErrorResponse(e.getMessage()), HttpStatus.BAD_REQUEST);
+			} catch (Exception e) {
+				log.error("{} has encounterd a server error while liking a batch of tweets", username, e);
+				return new ResponseEntity<>(new ErrorResponse("Application has faced an issue"),
+						HttpStatus.INTERNAL_SERVER_ERROR);
+			}
+		});
 	}
 
 	/**
 	 * Controller method to comment on an existing tweet HTTP GUT Mapping
 	 * 
-	 * @return ResponseEntity
+	 * @return DeferredResult
 	 * 
 	 *         http://localhost:8082/api/v1.0/tweets/ram/reply/ibe2226137b37328
 	 */
 	@PostMapping(value = "/tweets/{username}/reply/{tweetId}")
-	public ResponseEntity<?> replyToTweet(@PathVariable("username") String username,
+	public DeferredResult<ResponseEntity<?>> replyToTweet(@PathVariable("username") String username,
 			@PathVariable("tweetId") String tweetId, @RequestBody Reply tweetReply) {
-		try {
-			kafkaTemplate.send(KAFKA_TOPIC, username + " has commented on a tweet.");
-			return new ResponseEntity<>(tweetService.replyTweet(username, tweetId, tweetReply.getComment()),
-					HttpStatus.OK);
-		} catch (TweetNotFoundException e) {
-			kafkaTemplate.send(KAFKA_TOPIC, username + " has encounterd an error while commenting on a tweet");
-			return new ResponseEntity<>(new ErrorResponse("Given tweetId cannot be found"), HttpStatus.NOT_FOUND);
-		} catch (Exception e) {
-			kafkaTemplate.send(KAFKA_TOPIC, username + " has encounterd a server error while commenting on a tweet");
-			return new ResponseEntity<>(new ErrorResponse("Application has faced an issue"),
-					HttpStatus.INTERNAL_SERVER_ERROR);
-		}
+		return asyncResponses.onMongoWrite(() -> {
+			try {
+				return new ResponseEntity<>(tweetService.replyTweet(username, tweetId, tweetReply.getComment()),
+						HttpStatus.OK);
+			} catch (TweetNotFoundException e) {
+				log.warn("{} has encounterd an error while commenting on a tweet", username);
+				return new ResponseEntity<>(new ErrorResponse("Given tweetId cannot be found"), HttpStatus.NOT_FOUND);
+			} catch (Exception e) {
+				log.error("{} has encounterd a server error while commenting on a tweet", username, e);
+				return new ResponseEntity<>(new ErrorResponse("Application has faced an issue"),
+						HttpStatus.INTERNAL_SERVER_ERROR);
+			}
+		});
 	}
 
 }
@@ -2,13 +2,20 @@ package com.tweetapp.controller;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.CrossOrigin;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import com.tweetapp.configs.AsyncResponses;
+import com.tweetapp.dto.ErrorResponse;
+import com.tweetapp.exception.InvalidCursorException;
 import com.tweetapp.services.UserModelService;
 
 /**
@@ -22,16 +29,53 @@ public class UserController {
 	@Autowired
 	private UserModelService userModelService;
 
+//	injected bean AsyncResponses, handlers run on the mongo executor
+	@Autowired
+	private AsyncResponses asyncResponses;
+
 	/**
 	 * Controller method to retrive all the available users HTTP GET mapping
 	 * 
-	 * @return ResponseEntity
+	 * @return DeferredResult
 	 * 
 	 *         http://localhost:/8082/api/v1.0/tweets/users/all
 	 */
 	@GetMapping(value = "/tweets/users/all")
-	public ResponseEntity<?> getAllUsers() {
-		return new ResponseEntity<>(userModelService.getAllUsers(), HttpStatus.OK);
+	public DeferredResult<ResponseEntity<?>> getAllUsers() {
+		return asyncResponses.onMongo(() -> new ResponseEntity<>(userModelService.getAllUsers(), HttpStatus.OK));
+	}
+
+	/**
+	 * Controller method to stream every user as NDJSON HTTP GET mapping,
+	 * selected with Accept: application/x-ndjson
+	 * 
+	 * @return ResponseEntity
+	 * 
+	 *         http://localhost:8082/api/v1.0/tweets/users/all
+	 */
+	@GetMapping(value = "/tweets/users/all", produces = MediaType.APPLICATION_NDJSON_VALUE)
+	public ResponseEntity<StreamingResponseBody> streamAllUsers() {
+		return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(userModelService.streamAllUsers());
+	}
+
+	/**
+	 * Controller method to page through the user directory HTTP GET mapping
+	 * 
+	 * @return DeferredResult
+	 * 
+	 *         http://localhost:8082/api/v1.0/tweets/users/directory?limit=50
+	 */
+	@GetMapping(value = "/tweets/users/directory")
+	public DeferredResult<ResponseEntity<?>> getUserDirectory(
+			@RequestParam(value = "after", required = false) String after,
+			@RequestParam(value = "limit", required = false) Integer limit) {
+		return asyncResponses.onMongo(() -> {
+			try {
+				return new ResponseEntity<>(userModelService.getDirectory(after, limit), HttpStatus.OK);
+			} catch (InvalidCursorException e) {
+				return new ResponseEntity<>(new ErrorResponse("Invalid cursor received"), HttpStatus.BAD_REQUEST);
+			}
+		});
 	}
 
 	// method to search for like users by username
@@ -39,19 +83,41 @@ public class UserController {
 	/**
 	 * Controller method to find user by username HTTP GET mapping
 	 * 
-	 * @return ResponseEntity
+	 * @return DeferredResult
 	 * 
 	 *         http://localhost:/8082/api/v1.0/tweets/user/search/ram@gmail.com
 	 */
 	@GetMapping(value = "/tweets/user/search/{username}")
-	public ResponseEntity<?> searchForUsers(@PathVariable String username) {
-		return new ResponseEntity<>(userModelService.getUsersByUsername(username), HttpStatus.OK);
+	public DeferredResult<ResponseEntity<?>> searchForUsers(@PathVariable String username) {
+		return asyncResponses.onMongo(
+				() -> new ResponseEntity<>(userModelService.getUsersByUsername(username), HttpStatus.OK));
 	}
 	
+	/**
+	 * Controller method to page through users matching a prefix of their
+	 * username, first or last name HTTP GET mapping
+	 * 
+	 * @return DeferredResult
+	 * 
+	 *         http://localhost:8082/api/v1.0/tweets/users/search?q=ra&limit=10
+	 */
+	@GetMapping(value = "/tweets/users/search")
+	public DeferredResult<ResponseEntity<?>> searchUsers(@RequestParam(value = "q") String query,
+			@RequestParam(value = "after", required = false) String after,
+			@RequestParam(value = "limit", required = false) Integer limit) {
+		return asyncResponses.onMongo(() -> {
+			try {
+				return new ResponseEntity<>(userModelService.searchUsers(query, after, limit), HttpStatus.OK);
+			} catch (InvalidCursorException e) {
+				return new ResponseEntity<>(new ErrorResponse("Invalid cursor received"), HttpStatus.BAD_REQUEST);
+			}
+		});
+	}
 	 
 	@GetMapping(value="tweets/user/profile/{username}")
-	public ResponseEntity<?> searchUser(@PathVariable String username){
-		return new ResponseEntity<>(userModelService.findByUsername(username), HttpStatus.OK);
+	public DeferredResult<ResponseEntity<?>> searchUser(@PathVariable String username){
+		return asyncResponses.onMongo(
+				() -> new ResponseEntity<>(userModelService.findByUsername(username), HttpStatus.OK));
 	}
 
 }
@@ -1,5 +1,8 @@
 package com.tweetapp.dto;
 
+import java.time.Instant;
+
+import org.springframework.data.annotation.Id;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import lombok.AllArgsConstructor;
@@ -9,6 +12,9 @@ import lombok.NoArgsConstructor;
 import lombok.Setter;
 
 /**
+ * A reply to a tweet. Stored in its own collection and read back a page at a
+ * time; the tweet only keeps a short preview of the latest ones.
+ * 
  * @author Tarun Prajapat
  */
 @Getter
@@ -16,10 +22,21 @@ import lombok.Setter;
 @Data
 @AllArgsConstructor
 @NoArgsConstructor
-@Document
+@Document(collection = "comments")
 public class Comment {
 
+	@Id
+	private String commentId;
+	private String tweetId;
 	private String username;
 	private String comment;
+	private Instant createdAt;
+
+	public Comment(String tweetId, String username, String comment, Instant createdAt) {
+		this.tweetId = tweetId;
+		this.username = username;
+		this.comment = comment;
+		this.createdAt = createdAt;
+	}
 
 }
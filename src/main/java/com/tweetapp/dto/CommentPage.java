@@ -0,0 +1,30 @@
+package com.tweetapp.dto;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * One page of a tweet's comments, newest first. nextCursor is null on the
+ * last page.
+ * 
+ * @author Tarun Prajapat
+ */
+@Getter
+@Setter
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class CommentPage implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+	private List<Comment> comments = new ArrayList<>();
+	private String nextCursor;
+
+}
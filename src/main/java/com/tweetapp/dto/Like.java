@@ -1,5 +1,8 @@
 package com.tweetapp.dto;
 
+import java.time.Instant;
+
+import org.springframework.data.annotation.Id;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import lombok.AllArgsConstructor;
@@ -9,6 +12,11 @@ import lombok.NoArgsConstructor;
 import lombok.Setter;
 
 /**
+ * One like of one tweet by one user. Stored in its own collection so a
+ * tweet's document does not grow with its popularity; the unique
+ * (tweetId, username) index declared in MongoIndexManager makes a repeated
+ * like a no-op.
+ * 
  * @author Tarun Prajapat
  */
 @Getter
@@ -16,10 +24,23 @@ import lombok.Setter;
 @Data
 @AllArgsConstructor
 @NoArgsConstructor
-@Document
+@Document(collection = "likes")
 public class Like {
 
+	@Id
+	private String id;
 	private String tweetId;
 	private String username;
+	private Instant likedAt;
+
+	// set while BulkLikeWriter removes the like, see there
+	private String unlikeClaim;
+	private Instant unlikeClaimedUntil;
+
+	public Like(String tweetId, String username) {
+		this.tweetId = tweetId;
+		this.username = username;
+		this.likedAt = Instant.now();
+	}
 
 }
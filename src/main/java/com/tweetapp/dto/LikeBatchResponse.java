@@ -0,0 +1,28 @@
+package com.tweetapp.dto;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * Outcome of a batch like request, one LikeResponse per tweet in request
+ * order. missing lists the tweetIds that do not exist anymore.
+ * 
+ * @author Tarun Prajapat
+ */
+@Getter
+@Setter
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class LikeBatchResponse {
+
+	private List<LikeResponse> likes = new ArrayList<>();
+	private List<String> missing = new ArrayList<>();
+
+}
@@ -0,0 +1,24 @@
+package com.tweetapp.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * One entry of a batch like request: like (true) or unlike (false) a tweet
+ * 
+ * @author Tarun Prajapat
+ */
+@Getter
+@Setter
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class LikeOperation {
+
+	private String tweetId;
+	private Boolean like;
+
+}
@@ -0,0 +1,24 @@
+package com.tweetapp.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * @author Tarun Prajapat
+ */
+@Getter
+@Setter
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class LikeResponse {
+
+	private String tweetId;
+	private String username;
+	private Boolean likeStatus;
+	private Integer likesCount;
+
+}
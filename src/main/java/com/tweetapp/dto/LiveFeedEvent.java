@@ -0,0 +1,39 @@
+package com.tweetapp.dto;
+
+import java.io.Serializable;
+import java.time.Instant;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * Payload pushed to /tweets/stream clients. A new tweet carries its text and
+ * author, likes and comments updates only the tweetId and the new counter.
+ * 
+ * @author Tarun Prajapat
+ */
+@Getter
+@Setter
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class LiveFeedEvent implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+	private String tweetId;
+	private String username;
+	private String tweetText;
+	private String firstName;
+	private String lastName;
+	private String tweetDate;
+	private Integer likesCount;
+	private Integer commentsCount;
+	private Instant occurredAt;
+
+}
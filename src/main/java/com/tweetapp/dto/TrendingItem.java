@@ -0,0 +1,27 @@
+package com.tweetapp.dto;
+
+import java.io.Serializable;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * One trending hashtag or tweet id with its estimated count in the window
+ * 
+ * @author Tarun Prajapat
+ */
+@Getter
+@Setter
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class TrendingItem implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+	private String key;
+	private Integer count;
+
+}
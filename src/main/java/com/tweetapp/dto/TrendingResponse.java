@@ -0,0 +1,33 @@
+package com.tweetapp.dto;
+
+import java.io.Serializable;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * Top hashtags (by tweets using them) and top tweets (by likes and comments)
+ * of one sliding window, as of generatedAt
+ * 
+ * @author Tarun Prajapat
+ */
+@Getter
+@Setter
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class TrendingResponse implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+	private String window;
+	private Instant generatedAt;
+	private List<TrendingItem> hashtags = new ArrayList<>();
+	private List<TrendingItem> tweets = new ArrayList<>();
+
+}
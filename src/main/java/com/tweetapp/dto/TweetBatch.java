@@ -0,0 +1,30 @@
+package com.tweetapp.dto;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * Tweets fetched by id in one call, in request order. missing lists the
+ * tweetIds that do not exist anymore.
+ * 
+ * @author Tarun Prajapat
+ */
+@Getter
+@Setter
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class TweetBatch implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+	private List<TweetResponse> tweets = new ArrayList<>();
+	private List<String> missing = new ArrayList<>();
+
+}
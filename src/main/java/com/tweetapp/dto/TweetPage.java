@@ -0,0 +1,29 @@
+package com.tweetapp.dto;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * One page of a timeline, newest first. nextCursor is null on the last page.
+ * 
+ * @author Tarun Prajapat
+ */
+@Getter
+@Setter
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class TweetPage implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+	private List<TweetResponse> tweets = new ArrayList<>();
+	private String nextCursor;
+
+}
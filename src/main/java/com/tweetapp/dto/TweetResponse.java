@@ -30,6 +30,7 @@ public class TweetResponse implements Serializable {
 	private Integer likesCount;
 	private Integer commentsCount;
 	private Boolean likeStatus;
+	// preview of the latest comments, the rest is paged through the comments endpoint
 	private List<Comment> comments = new ArrayList<>();
 
 }
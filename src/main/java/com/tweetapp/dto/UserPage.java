@@ -0,0 +1,30 @@
+package com.tweetapp.dto;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * One page of users. nextCursor is null on the last page, otherwise it is
+ * passed back as after to get the next one.
+ * 
+ * @author Tarun Prajapat
+ */
+@Getter
+@Setter
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class UserPage implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+	private List<UserSummary> users = new ArrayList<>();
+	private String nextCursor;
+
+}
@@ -0,0 +1,28 @@
+package com.tweetapp.dto;
+
+import java.io.Serializable;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * Public view of a user, what search results and directories return
+ * 
+ * @author Tarun Prajapat
+ */
+@Getter
+@Setter
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class UserSummary implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+	private String username;
+	private String firstName;
+	private String lastName;
+
+}
@@ -1,12 +1,16 @@
 package com.tweetapp.entities;
 
 import java.io.Serializable;
+import java.time.Instant;
 import java.util.ArrayList;
 import java.util.List;
 
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.tweetapp.dto.Comment;
+import com.tweetapp.events.OutboxEvent;
 
 import lombok.AllArgsConstructor;
 import lombok.Data;
@@ -22,6 +26,7 @@ import lombok.Setter;
 @Data
 @AllArgsConstructor
 @NoArgsConstructor
+@Document
 public class Tweet implements Serializable {
 
 	/**
@@ -39,9 +44,50 @@ public class Tweet implements Serializable {
 
 	private String lastName;
 
+	/**
+	 * Display date as sent by older clients. Kept for compatibility and filled
+	 * from createdAt when a client does not send one; do not sort or filter on it.
+	 */
 	private String tweetDate;
 
-	private List<String> likes = new ArrayList<>();
+	/**
+	 * Server assigned creation time, drives the newest first timeline
+	 */
+	private Instant createdAt;
+
+	/**
+	 * #hashtags (lower case) and @mentioned usernames of tweetText, extracted
+	 * by the server on every write
+	 */
+	private List<String> hashtags = new ArrayList<>();
+
+	private List<String> mentions = new ArrayList<>();
+
+	/**
+	 * Latest few comments, bounded by $push/$slice. The full list lives in the
+	 * comments collection.
+	 */
+	private List<Comment> recentComments = new ArrayList<>();
+
+	/**
+	 * likesCount mirrors the likes collection, commentsCount the comments
+	 * collection. Both are kept in step by TweetService so feeds never need to count
+	 */
+	private Integer likesCount = 0;
+
+	private Integer commentsCount = 0;
 
-	private List<Comment> comments = new ArrayList<>();
+	/**
+	 * Set by a delete. The tweet stays, hidden from every query, until
+	 * OutboxRelay has published its last events and removes it.
+	 */
+	@JsonIgnore
+	private Instant deletedAt;
+
+	/**
+	 * Events written in the same operation as the tweet, waiting for
+	 * OutboxRelay to publish them. Empty once relayed, never sent to clients.
+	 */
+	@JsonIgnore
+	private List<OutboxEvent> outbox = new ArrayList<>();
 }
@@ -0,0 +1,37 @@
+package com.tweetapp.entities;
+
+import java.io.Serializable;
+import java.time.Instant;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * Marks a tweet deleted in the read model. TweetViewProjector writes it for
+ * TWEET_DELETED and drops any later event of the tweet, so a redelivered or
+ * late event cannot bring the view back. Expires after a while, see
+ * MongoIndexManager.
+ *
+ * @author Tarun Prajapat
+ */
+@Getter
+@Setter
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Document(collection = "tweet_view_tombstones")
+public class TweetTombstone implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	@Id
+	private String tweetId;
+
+	private Instant deletedAt;
+}
@@ -0,0 +1,65 @@
+package com.tweetapp.entities;
+
+import java.io.Serializable;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import com.tweetapp.dto.Comment;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * Read model of a tweet, shaped like a feed item. It is written only by
+ * TweetViewProjector from the tweets topic and read by the feed endpoints;
+ * the Tweet collection stays the write model.
+ * 
+ * @author Tarun Prajapat
+ */
+@Getter
+@Setter
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Document(collection = "tweet_view")
+public class TweetView implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	@Id
+	private String tweetId;
+
+	private String username;
+
+	private String tweetText;
+
+	private String firstName;
+
+	private String lastName;
+
+	private String tweetDate;
+
+	private Instant createdAt;
+
+	private Integer likesCount = 0;
+
+	private Integer commentsCount = 0;
+
+	private List<Comment> recentComments = new ArrayList<>();
+
+	/**
+	 * @return view of a tweet read straight from the write model
+	 */
+	public static TweetView of(Tweet tweet) {
+		return new TweetView(tweet.getTweetId(), tweet.getUsername(), tweet.getTweetText(), tweet.getFirstName(),
+				tweet.getLastName(), tweet.getTweetDate(), tweet.getCreatedAt(), tweet.getLikesCount(),
+				tweet.getCommentsCount(), tweet.getRecentComments());
+	}
+}
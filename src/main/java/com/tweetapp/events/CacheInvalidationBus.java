@@ -0,0 +1,154 @@
+package com.tweetapp.events;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.boot.autoconfigure.kafka.KafkaProperties;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.core.DefaultKafkaProducerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Broadcasts cache invalidations between instances over the
+ * cache-invalidation topic. A message is the plain string
+ * "origin cache key", a few dozen bytes; every instance reads the topic in
+ * its own consumer group from the latest offset, skips its own messages and
+ * evicts the key from the named Spring cache and from any local cache
+ * registered with onInvalidate.
+ *
+ * Tweets are only published when edited or deleted. Likes and replies change
+ * nothing but counters and are left to HotTweetCache's refresh on the other
+ * instances: on a viral tweet a message per like would make every instance
+ * evict and reload it all the time. Their counts lag by at most
+ * tweetapp.hot-tweets.refresh-after-ms plus the projection lag of the read
+ * model.
+ *
+ * publish never blocks the caller. Metrics: tweetapp.invalidation.sent,
+ * .applied and .lag (producer timestamp to applied on this instance).
+ *
+ * @author Tarun Prajapat
+ */
+@Component
+public class CacheInvalidationBus implements DisposableBean {
+
+	public static final String TOPIC = "cache-invalidation";
+
+	public static final String USERS = "users";
+
+	public static final String TWEETS = "tweets";
+
+	private final String origin = UUID.randomUUID().toString();
+
+	private final CacheManager cacheManager;
+
+	private final DefaultKafkaProducerFactory<String, String> producerFactory;
+
+	private final KafkaTemplate<String, String> kafkaTemplate;
+
+	private final List<Handler> handlers = new CopyOnWriteArrayList<>();
+
+	private final Counter sent;
+
+	private final Counter applied;
+
+	private final Timer lag;
+
+	Logger logger = LoggerFactory.getLogger(CacheInvalidationBus.class);
+
+	public CacheInvalidationBus(CacheManager cacheManager, KafkaProperties kafkaProperties,
+			MeterRegistry meterRegistry) {
+		this.cacheManager = cacheManager;
+		// own producer: the shared one serializes TweetEvents
+		Map<String, Object> producerProperties = kafkaProperties.buildProducerProperties();
+		producerProperties.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, StringSerializer.class);
+		producerProperties.put(ProducerConfig.LINGER_MS_CONFIG, 5);
+		this.producerFactory = new DefaultKafkaProducerFactory<>(producerProperties);
+		this.kafkaTemplate = new KafkaTemplate<>(producerFactory);
+		this.sent = meterRegistry.counter("tweetapp.invalidation.sent");
+		this.applied = meterRegistry.counter("tweetapp.invalidation.applied");
+		this.lag = meterRegistry.timer("tweetapp.invalidation.lag");
+	}
+
+	/**
+	 * Tells the other instances that key of cache changed
+	 */
+	public void publish(String cache, String key) {
+		try {
+			kafkaTemplate.send(TOPIC, key, origin + ' ' + cache + ' ' + key).addCallback(result -> sent.increment(),
+					e -> logger.error("Could not broadcast invalidation of {} {}", cache, key, e));
+		} catch (RuntimeException e) {
+			logger.error("Could not broadcast invalidation of {} {}", cache, key, e);
+		}
+	}
+
+	/**
+	 * Registers a local cache that is not managed by the CacheManager
+	 */
+	public void onInvalidate(String cache, Consumer<String> evict) {
+		handlers.add(new Handler(cache, evict));
+	}
+
+	@KafkaListener(id = "cache-invalidation", topics = TOPIC, groupId = "${tweetapp.invalidation.group-id}",
+			containerFactory = "tweetEventBatchFactory", concurrency = "1",
+			properties = { "auto.offset.reset=latest", "fetch.max.wait.ms=100",
+					"value.deserializer=org.apache.kafka.common.serialization.StringDeserializer" })
+	public void apply(List<ConsumerRecord<String, String>> records) {
+		long now = System.currentTimeMillis();
+		for (ConsumerRecord<String, String> record : records) {
+			String[] message = record.value() == null ? new String[0] : record.value().split(" ", 3);
+			if (message.length != 3 || origin.equals(message[0])) {
+				continue;
+			}
+			evict(message[1], message[2]);
+			applied.increment();
+			lag.record(Duration.ofMillis(Math.max(0, now - record.timestamp())));
+		}
+	}
+
+	private void evict(String cacheName, String key) {
+		Cache cache = cacheManager.getCache(cacheName);
+		if (cache != null) {
+			cache.evict(key);
+		}
+		for (Handler handler : handlers) {
+			if (handler.cache.equals(cacheName)) {
+				handler.evict.accept(key);
+			}
+		}
+	}
+
+	@Override
+	public void destroy() {
+		kafkaTemplate.flush();
+		producerFactory.destroy();
+	}
+
+	private static class Handler {
+
+		private final String cache;
+
+		private final Consumer<String> evict;
+
+		Handler(String cache, Consumer<String> evict) {
+			this.cache = cache;
+			this.evict = evict;
+		}
+	}
+}
@@ -0,0 +1,339 @@
+package com.tweetapp.events;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.PreDestroy;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter.SseEventBuilder;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tweetapp.dto.LiveFeedEvent;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Pushes new tweets, like counts and comment counts to /tweets/stream clients
+ * over Server-Sent Events, fed by the tweets topic. Every instance reads the
+ * topic in its own consumer group from the latest offset.
+ *
+ * An idle connection is an SseEmitter plus an empty queue: no request thread
+ * is held. Each event is serialized once and offered to every connection's
+ * bounded queue; a small sender pool drains the queues that have something
+ * in them. A client whose queue is full is too slow to keep up and is
+ * disconnected, as is one whose socket fails on the periodic heartbeat.
+ *
+ * Sends are blocking writes, so a client that stops reading can hold a
+ * sender thread until the container's socket timeout. A watchdog evicts any
+ * connection whose send takes longer than tweetapp.live.write-timeout-ms
+ * and adds a sender thread in place of the stuck one (up to
+ * max-stalled-senders at a time), so healthy clients keep being served; the
+ * extra thread goes away once the stuck write returns.
+ *
+ * Metrics: tweetapp.live.connections (gauge), tweetapp.live.sent and
+ * tweetapp.live.evicted.
+ *
+ * @author Tarun Prajapat
+ */
+@Component
+public class LiveFeedBroadcaster {
+
+	private final Map<Long, Connection> connections = new ConcurrentHashMap<>();
+
+	private final AtomicLong connectionIds = new AtomicLong();
+
+	private final ThreadPoolExecutor senders;
+
+	private final int senderThreads;
+
+	// senders stuck in a timed out write, each one replaced by an extra thread
+	private final AtomicInteger stalledSenders = new AtomicInteger();
+
+	private final int maxStalledSenders;
+
+	private final long writeTimeoutNanos;
+
+	private final ObjectMapper objectMapper;
+
+	private final int maxConnections;
+
+	private final int bufferSize;
+
+	private final long timeoutMs;
+
+	private final Counter sent;
+
+	private final Counter evicted;
+
+	Logger logger = LoggerFactory.getLogger(LiveFeedBroadcaster.class);
+
+	public LiveFeedBroadcaster(ObjectMapper objectMapper, MeterRegistry meterRegistry,
+			@Value("${tweetapp.live.max-connections:20000}") int maxConnections,
+			@Value("${tweetapp.live.buffer-size:64}") int bufferSize,
+			@Value("${tweetapp.live.timeout-ms:1800000}") long timeoutMs,
+			@Value("${tweetapp.live.sender-threads:4}") int senderThreads,
+			@Value("${tweetapp.live.write-timeout-ms:5000}") long writeTimeoutMs,
+			@Value("${tweetapp.live.max-stalled-senders:64}") int maxStalledSenders) {
+		this.objectMapper = objectMapper;
+		this.maxConnections = maxConnections;
+		this.bufferSize = bufferSize;
+		this.timeoutMs = timeoutMs;
+		this.senderThreads = senderThreads;
+		this.writeTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(writeTimeoutMs);
+		this.maxStalledSenders = maxStalledSenders;
+		AtomicInteger threads = new AtomicInteger();
+		ThreadFactory threadFactory = runnable -> {
+			Thread thread = new Thread(runnable, "live-feed-sender-" + threads.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		};
+		this.senders = new ThreadPoolExecutor(senderThreads, senderThreads + maxStalledSenders, 60, TimeUnit.SECONDS,
+				new LinkedBlockingQueue<>(), threadFactory);
+		meterRegistry.gauge("tweetapp.live.connections", connections, Map::size);
+		this.sent = meterRegistry.counter("tweetapp.live.sent");
+		this.evicted = meterRegistry.counter("tweetapp.live.evicted");
+	}
+
+	/**
+	 * @return emitter of a new connection, null when this instance is at
+	 *         tweetapp.live.max-connections
+	 */
+	public SseEmitter connect() {
+		if (connections.size() >= maxConnections) {
+			return null;
+		}
+		long id = connectionIds.incrementAndGet();
+		SseEmitter emitter = new SseEmitter(timeoutMs);
+		Connection connection = new Connection(id, emitter, new LinkedBlockingQueue<>(bufferSize));
+		connections.put(id, connection);
+		emitter.onCompletion(() -> connections.remove(id));
+		emitter.onTimeout(() -> connections.remove(id));
+		emitter.onError(e -> connections.remove(id));
+		return emitter;
+	}
+
+	@KafkaListener(id = "live-feed", topics = "tweets", groupId = "${tweetapp.live.group-id}",
+			containerFactory = "tweetEventBatchFactory", concurrency = "1",
+			properties = "auto.offset.reset=latest")
+	public void broadcast(List<ConsumerRecord<String, TweetEvent>> records) {
+		if (connections.isEmpty()) {
+			return;
+		}
+		int decoded = TweetEventRecords.decodedCount(records);
+		for (ConsumerRecord<String, TweetEvent> record : records.subList(0, decoded)) {
+			Outgoing event = toOutgoing(record.value());
+			if (event != null) {
+				connections.values().forEach(connection -> enqueue(connection, event));
+			}
+		}
+		TweetEventRecords.rejectUndecodable(records, decoded);
+	}
+
+	/**
+	 * Keeps proxies from closing idle streams and finds dead sockets
+	 */
+	@Scheduled(fixedRateString = "${tweetapp.live.heartbeat-interval-ms:25000}")
+	public void heartbeat() {
+		Outgoing heartbeat = new Outgoing(null, null, null);
+		connections.values().forEach(connection -> enqueue(connection, heartbeat));
+	}
+
+	private Outgoing toOutgoing(TweetEvent event) {
+		if (event == null) {
+			return null;
+		}
+		LiveFeedEvent payload;
+		String name;
+		switch (event.getType()) {
+		case TWEET_CREATED:
+			name = "tweet";
+			payload = new LiveFeedEvent(event.getTweetId(), event.getUsername(), event.getText(),
+					event.getFirstName(), event.getLastName(), event.getTweetDate(), 0, 0, event.getOccurredAt());
+			break;
+		case TWEET_LIKED:
+		case TWEET_UNLIKED:
+			name = "likes";
+			payload = new LiveFeedEvent(event.getTweetId(), null, null, null, null, null, event.getLikesCount(),
+					null, event.getOccurredAt());
+			break;
+		case COMMENT_ADDED:
+			name = "comments";
+			payload = new LiveFeedEvent(event.getTweetId(), null, null, null, null, null, null,
+					event.getCommentsCount(), event.getOccurredAt());
+			break;
+		default:
+			return null;
+		}
+		try {
+			// serialized once here, not once per connection
+			return new Outgoing(name, event.getTweetId(), objectMapper.writeValueAsString(payload));
+		} catch (JsonProcessingException e) {
+			logger.error("Could not serialize live feed event for {}", event.getTweetId(), e);
+			return null;
+		}
+	}
+
+	private void enqueue(Connection connection, Outgoing event) {
+		if (!connection.queue.offer(event)) {
+			evict(connection, "buffer full");
+			return;
+		}
+		if (connection.draining.compareAndSet(false, true)) {
+			senders.execute(() -> drain(connection));
+		}
+	}
+
+	private void drain(Connection connection) {
+		try {
+			Outgoing event;
+			while ((event = connection.queue.poll()) != null && !connection.closing) {
+				connection.sendingSince = System.nanoTime();
+				connection.emitter.send(event.toSse());
+				connection.sendingSince = 0;
+				sent.increment();
+			}
+		} catch (IOException | IllegalStateException e) {
+			evict(connection, "send failed");
+			return;
+		} finally {
+			connection.sendingSince = 0;
+			connection.draining.set(false);
+			if (connection.closing) {
+				// evicted while this thread was sending, completing is left to it
+				connection.complete();
+			}
+			if (connection.stalled.compareAndSet(true, false)) {
+				// the stuck write returned, the extra sender is not needed anymore
+				stalledSenders.decrementAndGet();
+				resizeSenders();
+			}
+		}
+		// an event may have been queued after the last poll but before draining was cleared
+		if (!connection.queue.isEmpty() && connection.draining.compareAndSet(false, true)) {
+			senders.execute(() -> drain(connection));
+		}
+	}
+
+	/**
+	 * Evicts connections whose send has not returned within the write
+	 * timeout and puts an extra sender in place of each stuck one
+	 */
+	@Scheduled(fixedDelayString = "${tweetapp.live.write-timeout-check-ms:1000}")
+	public void evictStalled() {
+		long now = System.nanoTime();
+		for (Connection connection : connections.values()) {
+			long since = connection.sendingSince;
+			if (since != 0 && now - since > writeTimeoutNanos && connection.stalled.compareAndSet(false, true)) {
+				stalledSenders.incrementAndGet();
+				resizeSenders();
+				evict(connection, "write timed out");
+			}
+		}
+	}
+
+	private synchronized void resizeSenders() {
+		int size = senderThreads + Math.min(stalledSenders.get(), maxStalledSenders);
+		// idle threads over the new size stop, queued drains start new ones up to it
+		senders.setCorePoolSize(size);
+	}
+
+	private void evict(Connection connection, String reason) {
+		if (connections.remove(connection.id) != null) {
+			evicted.increment();
+			connection.queue.clear();
+			logger.debug("Disconnected live feed client {}: {}", connection.id, reason);
+			connection.closing = true;
+			// a send in progress holds the emitter, completing here would wait for it
+			if (!connection.draining.get()) {
+				connection.complete();
+			}
+		}
+	}
+
+	@PreDestroy
+	public void close() {
+		connections.values().forEach(connection -> connection.emitter.complete());
+		senders.shutdownNow();
+	}
+
+	private static class Connection {
+
+		private final long id;
+
+		private final SseEmitter emitter;
+
+		private final BlockingQueue<Outgoing> queue;
+
+		private final AtomicBoolean draining = new AtomicBoolean();
+
+		// start of the send in progress, 0 when none
+		private volatile long sendingSince;
+
+		// set once by the watchdog when a send timed out
+		private final AtomicBoolean stalled = new AtomicBoolean();
+
+		// evicted, whoever sees it last with no send in progress completes the emitter
+		private volatile boolean closing;
+
+		private final AtomicBoolean completed = new AtomicBoolean();
+
+		Connection(long id, SseEmitter emitter, BlockingQueue<Outgoing> queue) {
+			this.id = id;
+			this.emitter = emitter;
+			this.queue = queue;
+		}
+
+		void complete() {
+			if (completed.compareAndSet(false, true)) {
+				emitter.complete();
+			}
+		}
+	}
+
+	/**
+	 * Event shared by all connections. SSE builders are stateful, so each
+	 * send builds its own from these fields; a null name is a heartbeat.
+	 */
+	private static class Outgoing {
+
+		private final String name;
+
+		private final String id;
+
+		private final String data;
+
+		Outgoing(String name, String id, String data) {
+			this.name = name;
+			this.id = id;
+			this.data = data;
+		}
+
+		SseEventBuilder toSse() {
+			if (name == null) {
+				return SseEmitter.event().comment("heartbeat");
+			}
+			return SseEmitter.event().name(name).id(id).data(data, MediaType.APPLICATION_JSON);
+		}
+	}
+}
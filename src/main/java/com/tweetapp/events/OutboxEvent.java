@@ -0,0 +1,25 @@
+package com.tweetapp.events;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * A TweetEvent waiting in its tweet's outbox until OutboxRelay has handed it
+ * to Kafka. eventId lets the relay remove exactly the events it delivered.
+ * 
+ * @author Tarun Prajapat
+ */
+@Getter
+@Setter
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class OutboxEvent {
+
+	private String eventId;
+	private TweetEvent event;
+
+}
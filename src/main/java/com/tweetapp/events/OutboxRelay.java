@@ -0,0 +1,213 @@
+package com.tweetapp.events;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.Collectors;
+
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.BulkOperations.BulkMode;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.SendResult;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.util.concurrent.ListenableFuture;
+
+import com.tweetapp.entities.Tweet;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Drains tweet outboxes to Kafka. Tweet writes put their event into the
+ * tweet document itself (Tweet.outbox), so the write and the event are one
+ * atomic Mongo operation; this relay publishes them afterwards, off the
+ * request path.
+ *
+ * Each round claims up to batch-size tweets with pending events under a
+ * lease (so several instances never relay the same tweet at once), sends all
+ * their events in one producer batch, waits for the acks and then pulls the
+ * delivered events out of the outboxes with one bulk write. A tweet's events
+ * are sent in outbox order under the tweet's key, and only an acknowledged
+ * prefix is removed, so per tweet ordering holds and delivery is at least
+ * once. Every event of a tweet goes through here, so consumers see them in
+ * the order they were written.
+ *
+ * Like and comment events are queued without counts; the relay stamps them
+ * with the tweet's counts as read at claim time, which are at least as new
+ * as the event, so a consumer applying them in order ends on the latest
+ * count. A deleted tweet (deletedAt set) is removed once its last event is
+ * delivered.
+ *
+ * @author Tarun Prajapat
+ */
+@Component
+public class OutboxRelay {
+
+	private static final String KAFKA_TOPIC = "tweets";
+
+	private static final String LEASE = "outboxLease";
+
+	private static final String CLAIM = "outboxClaim";
+
+//	Injected MongoTemplate bean
+	@Autowired
+	private MongoTemplate mongoTemplate;
+
+//	Injected KafkaTemplate bean, the relay waits for acks itself
+	@Autowired
+	private KafkaTemplate<String, TweetEvent> kafkaTemplate;
+
+	@Value("${tweetapp.outbox.batch-size:200}")
+	private int batchSize;
+
+	@Value("${tweetapp.outbox.lease-ms:30000}")
+	private long leaseMs;
+
+	@Value("${tweetapp.outbox.send-timeout-ms:10000}")
+	private long sendTimeoutMs;
+
+	private final String relayId = UUID.randomUUID().toString();
+
+	private final Counter relayed;
+
+	Logger logger = LoggerFactory.getLogger(OutboxRelay.class);
+
+	public OutboxRelay(MeterRegistry meterRegistry) {
+		this.relayed = meterRegistry.counter("tweetapp.outbox.relayed");
+	}
+
+	@Scheduled(fixedDelayString = "${tweetapp.outbox.poll-interval-ms:200}")
+	public void relay() {
+		List<Tweet> claimed = claimBatch();
+		if (claimed.isEmpty()) {
+			return;
+		}
+		List<List<ListenableFuture<SendResult<String, TweetEvent>>>> sends = new ArrayList<>(claimed.size());
+		for (Tweet tweet : claimed) {
+			List<ListenableFuture<SendResult<String, TweetEvent>>> tweetSends = new ArrayList<>();
+			for (OutboxEvent pending : tweet.getOutbox()) {
+				try {
+					tweetSends.add(
+							kafkaTemplate.send(KAFKA_TOPIC, tweet.getTweetId(), stamp(tweet, pending.getEvent())));
+				} catch (RuntimeException e) {
+					logger.error("Could not hand outbox event {} to the producer", pending.getEventId(), e);
+					break;
+				}
+			}
+			sends.add(tweetSends);
+		}
+		kafkaTemplate.flush();
+		BulkOperations release = mongoTemplate.bulkOps(BulkMode.UNORDERED, Tweet.class);
+		long delivered = 0;
+		for (int i = 0; i < claimed.size(); i++) {
+			Tweet tweet = claimed.get(i);
+			List<String> acked = ackedPrefix(tweet, sends.get(i));
+			Query ours = Query.query(Criteria.where("tweetId").is(tweet.getTweetId()).and(CLAIM).is(relayId));
+			if (tweet.getDeletedAt() != null && acked.size() == tweet.getOutbox().size()) {
+				// nothing can be queued on a deleted tweet, its last event is out
+				release.remove(ours);
+			} else {
+				Update update = new Update().unset(CLAIM).unset(LEASE);
+				if (!acked.isEmpty()) {
+					update.pull("outbox", new Document("eventId", new Document("$in", acked)));
+				}
+				release.updateOne(ours, update);
+			}
+			delivered += acked.size();
+		}
+		release.execute();
+		relayed.increment(delivered);
+		logger.debug("Relayed {} outbox events from {} tweets", delivered, claimed.size());
+	}
+
+	/**
+	 * Leases a batch of tweets with pending events to this relay: one query to
+	 * pick candidates, one update to claim them, one query to read back the
+	 * ones actually won
+	 */
+	private List<Tweet> claimBatch() {
+		Instant now = Instant.now();
+		Query candidates = Query.query(claimable(now)).limit(batchSize);
+		candidates.fields().include("tweetId");
+		List<String> ids = mongoTemplate.find(candidates, Tweet.class).stream().map(Tweet::getTweetId)
+				.collect(Collectors.toList());
+		if (ids.isEmpty()) {
+			return Collections.emptyList();
+		}
+		mongoTemplate.updateMulti(Query.query(claimable(now).and("tweetId").in(ids)),
+				new Update().set(CLAIM, relayId).set(LEASE, now.plusMillis(leaseMs)), Tweet.class);
+		Query claimed = Query.query(Criteria.where("tweetId").in(ids).and(CLAIM).is(relayId));
+		claimed.fields().include("tweetId").include("username").include("likesCount").include("commentsCount")
+				.include("deletedAt").include("outbox");
+		return mongoTemplate.find(claimed, Tweet.class);
+	}
+
+	/**
+	 * Fills in what the writer of the event left to the relay: the counts of
+	 * like and comment events, the author of a delete
+	 */
+	private TweetEvent stamp(Tweet tweet, TweetEvent event) {
+		switch (event.getType()) {
+		case TWEET_LIKED:
+		case TWEET_UNLIKED:
+			if (event.getLikesCount() == null) {
+				event.setLikesCount(tweet.getLikesCount());
+			}
+			break;
+		case COMMENT_ADDED:
+			if (event.getCommentsCount() == null) {
+				event.setCommentsCount(tweet.getCommentsCount());
+			}
+			break;
+		case TWEET_DELETED:
+			if (event.getUsername() == null) {
+				event.setUsername(tweet.getUsername());
+			}
+			break;
+		default:
+			break;
+		}
+		return event;
+	}
+
+	private Criteria claimable(Instant now) {
+		return Criteria.where("outbox.0").exists(true).orOperator(Criteria.where(LEASE).exists(false),
+				Criteria.where(LEASE).lt(now));
+	}
+
+	/**
+	 * @return ids of the leading events of the outbox that Kafka acknowledged
+	 */
+	private List<String> ackedPrefix(Tweet tweet, List<ListenableFuture<SendResult<String, TweetEvent>>> sends) {
+		List<String> acked = new ArrayList<>();
+		for (int i = 0; i < sends.size(); i++) {
+			try {
+				sends.get(i).get(sendTimeoutMs, TimeUnit.MILLISECONDS);
+				acked.add(tweet.getOutbox().get(i).getEventId());
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				break;
+			} catch (ExecutionException | TimeoutException e) {
+				logger.warn("Outbox event {} of tweet {} not acknowledged, will retry",
+						tweet.getOutbox().get(i).getEventId(), tweet.getTweetId(), e);
+				break;
+			}
+		}
+		return acked;
+	}
+}
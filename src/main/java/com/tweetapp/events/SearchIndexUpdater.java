@@ -0,0 +1,51 @@
+package com.tweetapp.events;
+
+import java.util.List;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.stereotype.Component;
+
+import com.tweetapp.services.TweetSearchIndex;
+
+/**
+ * Applies tweet writes made on other instances to this instance's search
+ * index. Each instance reads the tweets topic in its own group from the
+ * latest offset, older tweets come from the startup build. Writes made here
+ * are already indexed by TweetService and are skipped as unchanged.
+ *
+ * @author Tarun Prajapat
+ */
+@Component
+public class SearchIndexUpdater {
+
+//	Injected TweetSearchIndex bean
+	@Autowired
+	private TweetSearchIndex searchIndex;
+
+	@KafkaListener(id = "search-index", topics = "tweets", groupId = "${tweetapp.search.group-id}",
+			containerFactory = "tweetEventBatchFactory", concurrency = "1",
+			properties = "auto.offset.reset=latest")
+	public void update(List<ConsumerRecord<String, TweetEvent>> records) {
+		int decoded = TweetEventRecords.decodedCount(records);
+		for (ConsumerRecord<String, TweetEvent> record : records.subList(0, decoded)) {
+			TweetEvent event = record.value();
+			if (event == null) {
+				continue;
+			}
+			switch (event.getType()) {
+			case TWEET_CREATED:
+			case TWEET_UPDATED:
+				searchIndex.index(event.getTweetId(), event.getText());
+				break;
+			case TWEET_DELETED:
+				searchIndex.remove(event.getTweetId());
+				break;
+			default:
+				break;
+			}
+		}
+		TweetEventRecords.rejectUndecodable(records, decoded);
+	}
+}
@@ -0,0 +1,189 @@
+package com.tweetapp.events;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import org.bson.Document;
+import org.bson.types.Binary;
+
+import com.tweetapp.dto.TrendingItem;
+import com.tweetapp.utils.CountMinSketch;
+
+/**
+ * Approximate counts of keys over the last bucketCount * bucketMillis of
+ * event time, in fixed memory.
+ *
+ * The window is a ring of per-bucket count-min sketches plus one sketch that
+ * holds their sum, so an estimate reads depth counters whatever the window
+ * length. When time moves past a bucket its sketch is subtracted from the sum
+ * and reused. The heaviest keys are tracked in a small candidate set: a key
+ * enters when its estimate beats the weakest candidate, and estimates are
+ * refreshed as buckets expire.
+ *
+ * Not thread safe, TrendingAggregator serializes access.
+ *
+ * @author Tarun Prajapat
+ */
+public class SlidingWindowCounter {
+
+	private final long bucketMillis;
+
+	private final CountMinSketch[] buckets;
+
+	private final CountMinSketch window;
+
+	private final int maxCandidates;
+
+	private final Map<String, Integer> candidates = new HashMap<>();
+
+	// newest bucket of the ring, as epoch millis / bucketMillis
+	private long head = Long.MIN_VALUE;
+
+	public SlidingWindowCounter(long bucketMillis, int bucketCount, int depth, int width, int maxCandidates) {
+		this.bucketMillis = bucketMillis;
+		this.buckets = new CountMinSketch[bucketCount];
+		for (int i = 0; i < bucketCount; i++) {
+			buckets[i] = new CountMinSketch(depth, width);
+		}
+		this.window = new CountMinSketch(depth, width);
+		this.maxCandidates = maxCandidates;
+	}
+
+	/**
+	 * Counts key once at the given event time. Events older than the window
+	 * are ignored; events stamped after nowMillis, by a skewed clock, count
+	 * at nowMillis rather than moving the window into the future and
+	 * expiring everything in it.
+	 */
+	public void add(String key, long timeMillis, long nowMillis) {
+		long time = Math.min(timeMillis, nowMillis);
+		long bucket = Math.floorDiv(time, bucketMillis);
+		if (bucket > head) {
+			advance(time);
+		} else if (bucket <= head - buckets.length) {
+			return;
+		}
+		buckets[slot(bucket)].add(key, 1);
+		window.add(key, 1);
+		offer(key, window.estimate(key));
+	}
+
+	/**
+	 * Moves the window forward to nowMillis, expiring the buckets that fall out
+	 */
+	public void advance(long nowMillis) {
+		long bucket = Math.floorDiv(nowMillis, bucketMillis);
+		if (bucket <= head) {
+			return;
+		}
+		if (head == Long.MIN_VALUE || bucket - head >= buckets.length) {
+			reset();
+		} else {
+			for (long expired = head + 1; expired <= bucket; expired++) {
+				CountMinSketch sketch = buckets[slot(expired)];
+				window.subtract(sketch);
+				sketch.clear();
+			}
+		}
+		head = bucket;
+		refreshCandidates();
+	}
+
+	/**
+	 * Drops every count
+	 */
+	public void reset() {
+		for (CountMinSketch sketch : buckets) {
+			sketch.clear();
+		}
+		window.clear();
+		candidates.clear();
+		head = Long.MIN_VALUE;
+	}
+
+	/**
+	 * @return up to limit keys with the highest estimates, highest first
+	 */
+	public List<TrendingItem> top(int limit) {
+		return candidates.entrySet().stream()
+				.sorted(Map.Entry.<String, Integer>comparingByValue(Comparator.reverseOrder())
+						.thenComparing(Map.Entry.comparingByKey()))
+				.limit(limit).map(entry -> new TrendingItem(entry.getKey(), entry.getValue()))
+				.collect(Collectors.toList());
+	}
+
+	/**
+	 * @return checkpoint of the ring, the summed sketch is rebuilt on load
+	 */
+	public Document toDocument() {
+		List<Binary> sketches = new ArrayList<>(buckets.length);
+		for (CountMinSketch sketch : buckets) {
+			sketches.add(new Binary(sketch.toBytes()));
+		}
+		return new Document("hashing", CountMinSketch.HASHING).append("head", head).append("buckets", sketches)
+				.append("candidates", new Document(new HashMap<String, Object>(candidates)));
+	}
+
+	/**
+	 * Restores a checkpoint written by toDocument with the same ring and
+	 * sketch shape
+	 */
+	public void load(Document checkpoint) {
+		if (checkpoint.getInteger("hashing", 1) != CountMinSketch.HASHING) {
+			throw new IllegalArgumentException("Checkpoint sketches use another hashing");
+		}
+		List<Binary> sketches = checkpoint.getList("buckets", Binary.class);
+		if (sketches.size() != buckets.length) {
+			throw new IllegalArgumentException(
+					"Checkpoint has " + sketches.size() + " buckets, expected " + buckets.length);
+		}
+		window.clear();
+		for (int i = 0; i < buckets.length; i++) {
+			buckets[i].load(sketches.get(i).getData());
+			window.add(buckets[i]);
+		}
+		head = checkpoint.getLong("head");
+		candidates.clear();
+		Document saved = checkpoint.get("candidates", Document.class);
+		saved.forEach((key, count) -> candidates.put(key, ((Number) count).intValue()));
+	}
+
+	private void offer(String key, int estimate) {
+		if (candidates.containsKey(key) || candidates.size() < maxCandidates) {
+			candidates.put(key, estimate);
+			return;
+		}
+		Map.Entry<String, Integer> weakest = null;
+		for (Map.Entry<String, Integer> entry : candidates.entrySet()) {
+			if (weakest == null || entry.getValue() < weakest.getValue()) {
+				weakest = entry;
+			}
+		}
+		if (estimate > weakest.getValue()) {
+			candidates.remove(weakest.getKey());
+			candidates.put(key, estimate);
+		}
+	}
+
+	private void refreshCandidates() {
+		Iterator<Map.Entry<String, Integer>> entries = candidates.entrySet().iterator();
+		while (entries.hasNext()) {
+			Map.Entry<String, Integer> entry = entries.next();
+			int estimate = window.estimate(entry.getKey());
+			if (estimate <= 0) {
+				entries.remove();
+			} else {
+				entry.setValue(estimate);
+			}
+		}
+	}
+
+	private int slot(long bucket) {
+		return (int) Math.floorMod(bucket, (long) buckets.length);
+	}
+}
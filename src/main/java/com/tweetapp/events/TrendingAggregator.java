@@ -0,0 +1,264 @@
+package com.tweetapp.events;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.BulkOperations.BulkMode;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Sort.Direction;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.listener.ConsumerSeekAware;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import com.tweetapp.dto.TrendingResponse;
+import com.tweetapp.utils.TextEntities;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Streaming trending hashtags and tweets over the last 5 minutes, hour and
+ * day. Every instance reads the whole tweets topic in its own consumer group
+ * and keeps SlidingWindowCounters in memory: hashtags are counted when a tweet
+ * using them is created, tweets when they are liked or commented on.
+ *
+ * Readers never touch the counters: once a second the windows are advanced
+ * and a TrendingResponse per window is published through a volatile map, so
+ * getTrending is a map lookup.
+ *
+ * Counters and the consumed offsets are checkpointed to Mongo. Every
+ * instance writes its own checkpoints, one document per counter plus one for
+ * the offsets, written last, that makes the checkpoint complete. Since every
+ * instance counts the whole topic, any complete checkpoint will do: on start
+ * the newest one is loaded and the consumer seeks to its offsets, so only the
+ * events since then are replayed; without one it starts a day back.
+ *
+ * @author Tarun Prajapat
+ */
+@Component
+public class TrendingAggregator implements ConsumerSeekAware {
+
+	private static final String CHECKPOINTS = "trending_checkpoints";
+
+	private static final String OFFSETS = "offsets";
+
+	private static final Duration LONGEST_WINDOW = Duration.ofHours(24);
+
+//	Injected MongoTemplate bean
+	@Autowired
+	private MongoTemplate mongoTemplate;
+
+	@Value("${tweetapp.trending.top:10}")
+	private int top;
+
+	// window name -> counter, guarded by this
+	private final Map<String, SlidingWindowCounter> hashtags = new LinkedHashMap<>();
+
+	private final Map<String, SlidingWindowCounter> tweets = new LinkedHashMap<>();
+
+	// next offset to consume per partition, guarded by this
+	private final Map<TopicPartition, Long> offsets = new HashMap<>();
+
+	private final String instanceId = UUID.randomUUID().toString();
+
+	// sequence of this instance's checkpoints
+	private final AtomicLong checkpointSeq = new AtomicLong();
+
+	private volatile Map<String, TrendingResponse> snapshots = Collections.emptyMap();
+
+	private final Counter counted;
+
+	Logger logger = LoggerFactory.getLogger(TrendingAggregator.class);
+
+	public TrendingAggregator(MeterRegistry meterRegistry,
+			@Value("${tweetapp.trending.sketch-depth:4}") int depth,
+			@Value("${tweetapp.trending.sketch-width:2048}") int width,
+			@Value("${tweetapp.trending.candidates:100}") int candidates) {
+		// 30 x 10s, 60 x 1m and 48 x 30m buckets
+		window("5m", Duration.ofSeconds(10), 30, depth, width, candidates);
+		window("1h", Duration.ofMinutes(1), 60, depth, width, candidates);
+		window("24h", Duration.ofMinutes(30), 48, depth, width, candidates);
+		this.counted = meterRegistry.counter("tweetapp.trending.events");
+	}
+
+	private void window(String name, Duration bucket, int buckets, int depth, int width, int candidates) {
+		hashtags.put(name, new SlidingWindowCounter(bucket.toMillis(), buckets, depth, width, candidates));
+		tweets.put(name, new SlidingWindowCounter(bucket.toMillis(), buckets, depth, width, candidates));
+	}
+
+	/**
+	 * @return precomputed trending lists of the window, null for an unknown window
+	 */
+	public TrendingResponse getTrending(String window) {
+		return snapshots.get(window);
+	}
+
+	@KafkaListener(id = "trending", topics = "tweets", groupId = "${tweetapp.trending.group-id}",
+			containerFactory = "tweetEventBatchFactory", concurrency = "1")
+	public synchronized void aggregate(List<ConsumerRecord<String, TweetEvent>> records) {
+		int decoded = TweetEventRecords.decodedCount(records);
+		long now = System.currentTimeMillis();
+		for (ConsumerRecord<String, TweetEvent> record : records.subList(0, decoded)) {
+			TweetEvent event = record.value();
+			if (event != null) {
+				long time = event.getOccurredAt() != null ? event.getOccurredAt().toEpochMilli() : record.timestamp();
+				count(event, time, now);
+			}
+			offsets.put(new TopicPartition(record.topic(), record.partition()), record.offset() + 1);
+		}
+		counted.increment(decoded);
+		TweetEventRecords.rejectUndecodable(records, decoded);
+	}
+
+	private void count(TweetEvent event, long time, long now) {
+		switch (event.getType()) {
+		case TWEET_CREATED:
+			for (String hashtag : TextEntities.hashtags(event.getText())) {
+				hashtags.values().forEach(counter -> counter.add(hashtag, time, now));
+			}
+			break;
+		case TWEET_LIKED:
+		case COMMENT_ADDED:
+			tweets.values().forEach(counter -> counter.add(event.getTweetId(), time, now));
+			break;
+		default:
+			break;
+		}
+	}
+
+	/**
+	 * Expires old buckets and republishes the trending lists
+	 */
+	@Scheduled(fixedRateString = "${tweetapp.trending.refresh-interval-ms:1000}")
+	public synchronized void refresh() {
+		Instant now = Instant.now();
+		Map<String, TrendingResponse> refreshed = new HashMap<>();
+		hashtags.forEach((window, counter) -> {
+			counter.advance(now.toEpochMilli());
+			SlidingWindowCounter tweetCounter = tweets.get(window);
+			tweetCounter.advance(now.toEpochMilli());
+			refreshed.put(window, new TrendingResponse(window, now, counter.top(top), tweetCounter.top(top)));
+		});
+		snapshots = Collections.unmodifiableMap(refreshed);
+	}
+
+	/**
+	 * Loads the last checkpoint, before the listener container starts
+	 */
+	@PostConstruct
+	public void restore() {
+		Query newest = Query.query(Criteria.where("name").is(OFFSETS)).with(Sort.by(Direction.DESC, "checkpointedAt"));
+		Document complete = mongoTemplate.findOne(newest, Document.class, CHECKPOINTS);
+		if (complete == null) {
+			return;
+		}
+		List<Document> checkpoints = mongoTemplate.find(Query.query(Criteria.where("instance")
+				.is(complete.getString("instance")).and("seq").is(complete.getLong("seq"))), Document.class,
+				CHECKPOINTS);
+		try {
+			synchronized (this) {
+				for (Document checkpoint : checkpoints) {
+					String name = checkpoint.getString("name");
+					if (OFFSETS.equals(name)) {
+						checkpoint.get("partitions", Document.class).forEach((partition, offset) -> offsets
+								.put(partitionOf(partition), ((Number) offset).longValue()));
+					} else if (name.startsWith("hashtags.") && hashtags.containsKey(name.substring(9))) {
+						hashtags.get(name.substring(9)).load(checkpoint);
+					} else if (name.startsWith("tweets.") && tweets.containsKey(name.substring(7))) {
+						tweets.get(name.substring(7)).load(checkpoint);
+					}
+				}
+			}
+			logger.info("Restored trending counters, resuming at {}", offsets);
+		} catch (RuntimeException e) {
+			// e.g. the sketch shape changed, start over from a day back
+			logger.warn("Discarding trending checkpoint", e);
+			synchronized (this) {
+				hashtags.values().forEach(SlidingWindowCounter::reset);
+				tweets.values().forEach(SlidingWindowCounter::reset);
+				offsets.clear();
+			}
+		}
+	}
+
+	@Override
+	public void onPartitionsAssigned(Map<TopicPartition, Long> assignments, ConsumerSeekCallback callback) {
+		long dayAgo = Instant.now().minus(LONGEST_WINDOW).toEpochMilli();
+		synchronized (this) {
+			assignments.keySet().forEach(partition -> {
+				Long offset = offsets.get(partition);
+				if (offset != null) {
+					callback.seek(partition.topic(), partition.partition(), offset);
+				} else {
+					callback.seekToTimestamp(partition.topic(), partition.partition(), dayAgo);
+				}
+			});
+		}
+	}
+
+	/**
+	 * Writes counters and offsets taken at the same point of the stream, then
+	 * drops this instance's previous checkpoint and any checkpoint too old to
+	 * be useful
+	 */
+	@Scheduled(initialDelayString = "${tweetapp.trending.checkpoint-interval-ms:60000}",
+			fixedDelayString = "${tweetapp.trending.checkpoint-interval-ms:60000}")
+	@PreDestroy
+	public void checkpoint() {
+		List<Document> documents = new ArrayList<>();
+		long seq = checkpointSeq.incrementAndGet();
+		Instant now = Instant.now();
+		synchronized (this) {
+			if (offsets.isEmpty()) {
+				return;
+			}
+			hashtags.forEach(
+					(window, counter) -> documents.add(counter.toDocument().append("name", "hashtags." + window)));
+			tweets.forEach((window, counter) -> documents.add(counter.toDocument().append("name", "tweets." + window)));
+			Document partitions = new Document();
+			offsets.forEach((partition, offset) -> partitions.put(partition.toString(), offset));
+			documents.add(new Document("name", OFFSETS).append("partitions", partitions));
+		}
+		// ordered, the offsets document goes in last
+		BulkOperations bulk = mongoTemplate.bulkOps(BulkMode.ORDERED, CHECKPOINTS);
+		for (Document document : documents) {
+			bulk.insert(document.append("_id", instanceId + "/" + seq + "/" + document.getString("name"))
+					.append("instance", instanceId).append("seq", seq).append("checkpointedAt", now));
+		}
+		bulk.execute();
+		mongoTemplate.remove(Query.query(new Criteria().orOperator(
+				Criteria.where("instance").is(instanceId).and("seq").lt(seq),
+				Criteria.where("checkpointedAt").lt(now.minus(LONGEST_WINDOW)),
+				// shared checkpoints of older versions
+				Criteria.where("instance").exists(false))), CHECKPOINTS);
+		logger.debug("Checkpointed trending counters at {}", documents.get(documents.size() - 1).get("partitions"));
+	}
+
+	private TopicPartition partitionOf(String name) {
+		int dash = name.lastIndexOf('-');
+		return new TopicPartition(name.substring(0, dash), Integer.parseInt(name.substring(dash + 1)));
+	}
+}
@@ -0,0 +1,75 @@
+package com.tweetapp.events;
+
+import java.time.Instant;
+
+import com.tweetapp.dto.Comment;
+import com.tweetapp.entities.Tweet;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * Domain event published to the tweets topic, keyed by tweetId so all events
+ * of one tweet land on one partition in order. Only the fields relevant to the
+ * type are set; counters carry the value after the change, so applying an
+ * event twice gives the same result.
+ * 
+ * @author Tarun Prajapat
+ */
+@Getter
+@Setter
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class TweetEvent {
+
+	private TweetEventType type;
+	private String tweetId;
+	// who did it: author, liker or commenter
+	private String username;
+	private Instant occurredAt;
+	// tweet text, or comment text for COMMENT_ADDED
+	private String text;
+	private String firstName;
+	private String lastName;
+	private String commentId;
+	private Integer likesCount;
+	private Integer commentsCount;
+	// display date of TWEET_CREATED, see Tweet.tweetDate
+	private String tweetDate;
+
+	public static TweetEvent tweetCreated(Tweet tweet) {
+		return new TweetEvent(TweetEventType.TWEET_CREATED, tweet.getTweetId(), tweet.getUsername(),
+				tweet.getCreatedAt(), tweet.getTweetText(), tweet.getFirstName(), tweet.getLastName(), null, 0, 0,
+				tweet.getTweetDate());
+	}
+
+	public static TweetEvent tweetUpdated(String tweetId, String username, String tweetText) {
+		return new TweetEvent(TweetEventType.TWEET_UPDATED, tweetId, username, Instant.now(), tweetText, null, null,
+				null, null, null, null);
+	}
+
+	public static TweetEvent tweetDeleted(String tweetId, String username) {
+		return new TweetEvent(TweetEventType.TWEET_DELETED, tweetId, username, Instant.now(), null, null, null,
+				null, null, null, null);
+	}
+
+	public static TweetEvent tweetLiked(String tweetId, String username, Integer likesCount) {
+		return new TweetEvent(TweetEventType.TWEET_LIKED, tweetId, username, Instant.now(), null, null, null, null,
+				likesCount, null, null);
+	}
+
+	public static TweetEvent tweetUnliked(String tweetId, String username, Integer likesCount) {
+		return new TweetEvent(TweetEventType.TWEET_UNLIKED, tweetId, username, Instant.now(), null, null, null,
+				null, likesCount, null, null);
+	}
+
+	public static TweetEvent commentAdded(Comment comment, Integer commentsCount) {
+		return new TweetEvent(TweetEventType.COMMENT_ADDED, comment.getTweetId(), comment.getUsername(),
+				comment.getCreatedAt(), comment.getComment(), null, null, comment.getCommentId(), null,
+				commentsCount, null);
+	}
+}
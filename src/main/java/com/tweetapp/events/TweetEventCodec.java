@@ -0,0 +1,156 @@
+package com.tweetapp.events;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+
+/**
+ * Compact binary encoding of TweetEvent.
+ *
+ * <pre>
+ * version : 1 byte
+ * type    : 1 byte, TweetEventType code
+ * fields  : varint bit mask of the fields present, in declaration order below
+ * values  : strings as varint length + UTF-8, numbers as zig-zag varints
+ * </pre>
+ *
+ * Absent fields cost nothing, so a like event is a few dozen bytes. A new
+ * version may only append fields; decoders read the fields they know and
+ * ignore the trailing bytes.
+ *
+ * @author Tarun Prajapat
+ */
+public final class TweetEventCodec {
+
+	// 2 appended tweetDate
+	public static final byte VERSION = 2;
+
+	private static final int TWEET_ID = 1;
+	private static final int USERNAME = 1 << 1;
+	private static final int OCCURRED_AT = 1 << 2;
+	private static final int TEXT = 1 << 3;
+	private static final int FIRST_NAME = 1 << 4;
+	private static final int LAST_NAME = 1 << 5;
+	private static final int COMMENT_ID = 1 << 6;
+	private static final int LIKES_COUNT = 1 << 7;
+	private static final int COMMENTS_COUNT = 1 << 8;
+	private static final int TWEET_DATE = 1 << 9;
+
+	private TweetEventCodec() {
+	}
+
+	public static byte[] encode(TweetEvent event) {
+		int mask = (event.getTweetId() != null ? TWEET_ID : 0) | (event.getUsername() != null ? USERNAME : 0)
+				| (event.getOccurredAt() != null ? OCCURRED_AT : 0) | (event.getText() != null ? TEXT : 0)
+				| (event.getFirstName() != null ? FIRST_NAME : 0) | (event.getLastName() != null ? LAST_NAME : 0)
+				| (event.getCommentId() != null ? COMMENT_ID : 0)
+				| (event.getLikesCount() != null ? LIKES_COUNT : 0)
+				| (event.getCommentsCount() != null ? COMMENTS_COUNT : 0)
+				| (event.getTweetDate() != null ? TWEET_DATE : 0);
+		ByteArrayOutputStream out = new ByteArrayOutputStream(64);
+		out.write(VERSION);
+		out.write(event.getType().getCode());
+		writeVarLong(out, mask);
+		writeString(out, event.getTweetId());
+		writeString(out, event.getUsername());
+		if (event.getOccurredAt() != null) {
+			writeVarLong(out, zigZag(event.getOccurredAt().toEpochMilli()));
+		}
+		writeString(out, event.getText());
+		writeString(out, event.getFirstName());
+		writeString(out, event.getLastName());
+		writeString(out, event.getCommentId());
+		if (event.getLikesCount() != null) {
+			writeVarLong(out, zigZag(event.getLikesCount()));
+		}
+		if (event.getCommentsCount() != null) {
+			writeVarLong(out, zigZag(event.getCommentsCount()));
+		}
+		writeString(out, event.getTweetDate());
+		return out.toByteArray();
+	}
+
+	/**
+	 * @return decoded event, null for an event type this version does not know
+	 * @throws IllegalArgumentException when the bytes are not a TweetEvent
+	 */
+	public static TweetEvent decode(byte[] data) {
+		try {
+			ByteBuffer in = ByteBuffer.wrap(data);
+			byte version = in.get();
+			if (version < 1) {
+				throw new IllegalArgumentException("Unsupported TweetEvent version " + version);
+			}
+			TweetEventType type = TweetEventType.fromCode(in.get());
+			if (type == null) {
+				return null;
+			}
+			long mask = readVarLong(in);
+			TweetEvent event = new TweetEvent();
+			event.setType(type);
+			event.setTweetId((mask & TWEET_ID) != 0 ? readString(in) : null);
+			event.setUsername((mask & USERNAME) != 0 ? readString(in) : null);
+			event.setOccurredAt(
+					(mask & OCCURRED_AT) != 0 ? Instant.ofEpochMilli(unZigZag(readVarLong(in))) : null);
+			event.setText((mask & TEXT) != 0 ? readString(in) : null);
+			event.setFirstName((mask & FIRST_NAME) != 0 ? readString(in) : null);
+			event.setLastName((mask & LAST_NAME) != 0 ? readString(in) : null);
+			event.setCommentId((mask & COMMENT_ID) != 0 ? readString(in) : null);
+			event.setLikesCount((mask & LIKES_COUNT) != 0 ? (int) unZigZag(readVarLong(in)) : null);
+			event.setCommentsCount((mask & COMMENTS_COUNT) != 0 ? (int) unZigZag(readVarLong(in)) : null);
+			event.setTweetDate((mask & TWEET_DATE) != 0 ? readString(in) : null);
+			return event;
+		} catch (BufferUnderflowException e) {
+			throw new IllegalArgumentException("Truncated TweetEvent", e);
+		}
+	}
+
+	private static void writeString(ByteArrayOutputStream out, String value) {
+		if (value == null) {
+			return;
+		}
+		byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+		writeVarLong(out, bytes.length);
+		out.write(bytes, 0, bytes.length);
+	}
+
+	private static String readString(ByteBuffer in) {
+		int length = (int) readVarLong(in);
+		if (length < 0 || length > in.remaining()) {
+			throw new IllegalArgumentException("Corrupt TweetEvent string length " + length);
+		}
+		String value = new String(in.array(), in.arrayOffset() + in.position(), length, StandardCharsets.UTF_8);
+		in.position(in.position() + length);
+		return value;
+	}
+
+	private static void writeVarLong(ByteArrayOutputStream out, long value) {
+		while ((value & ~0x7FL) != 0) {
+			out.write((int) ((value & 0x7F) | 0x80));
+			value >>>= 7;
+		}
+		out.write((int) value);
+	}
+
+	private static long readVarLong(ByteBuffer in) {
+		long value = 0;
+		for (int shift = 0; shift < 64; shift += 7) {
+			byte b = in.get();
+			value |= (long) (b & 0x7F) << shift;
+			if ((b & 0x80) == 0) {
+				return value;
+			}
+		}
+		throw new IllegalArgumentException("Corrupt TweetEvent varint");
+	}
+
+	private static long zigZag(long value) {
+		return (value << 1) ^ (value >> 63);
+	}
+
+	private static long unZigZag(long value) {
+		return (value >>> 1) ^ -(value & 1);
+	}
+}
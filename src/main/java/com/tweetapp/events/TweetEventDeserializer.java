@@ -0,0 +1,25 @@
+package com.tweetapp.events;
+
+import org.apache.kafka.common.errors.SerializationException;
+import org.apache.kafka.common.serialization.Deserializer;
+
+/**
+ * Kafka value deserializer for TweetEvent, see TweetEventCodec. Returns null
+ * for event types added by a newer version, so consumers can skip them.
+ * 
+ * @author Tarun Prajapat
+ */
+public class TweetEventDeserializer implements Deserializer<TweetEvent> {
+
+	@Override
+	public TweetEvent deserialize(String topic, byte[] data) {
+		if (data == null) {
+			return null;
+		}
+		try {
+			return TweetEventCodec.decode(data);
+		} catch (IllegalArgumentException e) {
+			throw new SerializationException("Cannot decode TweetEvent from " + topic, e);
+		}
+	}
+}
@@ -0,0 +1,54 @@
+package com.tweetapp.events;
+
+import java.util.List;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.springframework.kafka.listener.BatchListenerFailedException;
+import org.springframework.kafka.support.serializer.ErrorHandlingDeserializer;
+
+/**
+ * Helpers for batch listeners of the tweets topic. A record whose value
+ * could not be decoded reaches the listener with a null value and the
+ * decoding error in a header. The listener handles the records before it,
+ * then rejects it, and the container sends it to the dead-letter topic and
+ * carries on with the records after it.
+ *
+ * @author Tarun Prajapat
+ */
+public final class TweetEventRecords {
+
+	private TweetEventRecords() {
+	}
+
+	/**
+	 * @return number of leading records that were decoded
+	 */
+	public static int decodedCount(List<? extends ConsumerRecord<?, ?>> records) {
+		for (int i = 0; i < records.size(); i++) {
+			if (!isDecoded(records.get(i))) {
+				return i;
+			}
+		}
+		return records.size();
+	}
+
+	/**
+	 * Call once the first decoded records are handled
+	 *
+	 * @throws BatchListenerFailedException for the first record that was not decoded
+	 */
+	public static void rejectUndecodable(List<? extends ConsumerRecord<?, ?>> records, int decoded) {
+		if (decoded < records.size()) {
+			ConsumerRecord<?, ?> record = records.get(decoded);
+			throw new BatchListenerFailedException(
+					"Cannot decode record " + record.partition() + "@" + record.offset() + " of " + record.topic(),
+					record);
+		}
+	}
+
+	private static boolean isDecoded(ConsumerRecord<?, ?> record) {
+		// null values without the header are event types newer than this app, listeners skip them
+		return record.value() != null
+				|| record.headers().lastHeader(ErrorHandlingDeserializer.VALUE_DESERIALIZER_EXCEPTION_HEADER) == null;
+	}
+}
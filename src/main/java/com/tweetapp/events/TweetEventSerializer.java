@@ -0,0 +1,16 @@
+package com.tweetapp.events;
+
+import org.apache.kafka.common.serialization.Serializer;
+
+/**
+ * Kafka value serializer for TweetEvent, see TweetEventCodec
+ * 
+ * @author Tarun Prajapat
+ */
+public class TweetEventSerializer implements Serializer<TweetEvent> {
+
+	@Override
+	public byte[] serialize(String topic, TweetEvent event) {
+		return event == null ? null : TweetEventCodec.encode(event);
+	}
+}
@@ -0,0 +1,34 @@
+package com.tweetapp.events;
+
+/**
+ * Kinds of TweetEvent. The code is what goes on the wire, so existing codes
+ * must never be changed or reused.
+ * 
+ * @author Tarun Prajapat
+ */
+public enum TweetEventType {
+
+	TWEET_CREATED(1), TWEET_UPDATED(2), TWEET_DELETED(3), TWEET_LIKED(4), TWEET_UNLIKED(5), COMMENT_ADDED(6);
+
+	private final byte code;
+
+	TweetEventType(int code) {
+		this.code = (byte) code;
+	}
+
+	public byte getCode() {
+		return code;
+	}
+
+	/**
+	 * @return type for a wire code, null when this version does not know it
+	 */
+	public static TweetEventType fromCode(byte code) {
+		for (TweetEventType type : values()) {
+			if (type.code == code) {
+				return type;
+			}
+		}
+		return null;
+	}
+}
@@ -0,0 +1,208 @@
+package com.tweetapp.events;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.BulkOperations.BulkMode;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.listener.BatchListenerFailedException;
+import org.springframework.stereotype.Component;
+
+import com.tweetapp.dto.Comment;
+import com.tweetapp.entities.TweetTombstone;
+import com.tweetapp.entities.TweetView;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Keeps the TweetView read model in step with the tweets topic. All instances
+ * share one consumer group, so partitions (and therefore tweets) are split
+ * between them and adding instances adds projection throughput.
+ *
+ * Each poll is applied as one ordered bulk write and offsets are committed
+ * only after it succeeds. Every event is idempotent (counters are absolute
+ * values, comments are pushed once), so a batch replayed after a failure or a
+ * rebalance converges to the same view. A new group starts from the earliest
+ * offset and rebuilds the view from the log.
+ *
+ * The relay publishes a tweet's events in order, but the projector does not
+ * rely on it: counter events upsert, so they apply even before the tweet's
+ * TWEET_CREATED, and a delete leaves a TweetTombstone, so an event of the
+ * tweet delivered after it, e.g. redelivered from an older offset, does not
+ * bring the view back.
+ *
+ * Metrics: tweetapp.view.applied (events), tweetapp.view.batch (bulk write
+ * time) and tweetapp.view.lag (event time to applied). During a replay or a
+ * catch-up the rate of applied is the projection throughput.
+ *
+ * @author Tarun Prajapat
+ */
+@Component
+public class TweetViewProjector {
+
+//	Injected MongoTemplate bean
+	@Autowired
+	private MongoTemplate mongoTemplate;
+
+	@Value("${tweetapp.comments.preview-size:3}")
+	private int commentPreviewSize;
+
+	private final Counter applied;
+
+	private final Timer batch;
+
+	private final Timer lag;
+
+	Logger logger = LoggerFactory.getLogger(TweetViewProjector.class);
+
+	public TweetViewProjector(MeterRegistry meterRegistry) {
+		this.applied = meterRegistry.counter("tweetapp.view.applied");
+		this.batch = meterRegistry.timer("tweetapp.view.batch");
+		this.lag = meterRegistry.timer("tweetapp.view.lag");
+	}
+
+	@KafkaListener(id = "tweet-view", topics = "tweets", groupId = "${tweetapp.view.group-id:tweet-view}",
+			containerFactory = "tweetEventBatchFactory")
+	public void project(List<ConsumerRecord<String, TweetEvent>> records) {
+		int decoded = TweetEventRecords.decodedCount(records);
+		write(records.subList(0, decoded));
+		TweetEventRecords.rejectUndecodable(records, decoded);
+	}
+
+	private void write(List<ConsumerRecord<String, TweetEvent>> records) {
+		long start = System.nanoTime();
+		Set<String> deleted = findTombstones(records);
+		// ordered, the events of one tweet must be applied in log order
+		BulkOperations bulk = mongoTemplate.bulkOps(BulkMode.ORDERED, TweetView.class);
+		BulkOperations tombstones = mongoTemplate.bulkOps(BulkMode.UNORDERED, TweetTombstone.class);
+		// record of each operation, to tell which one Mongo rejected
+		List<ConsumerRecord<String, TweetEvent>> written = new ArrayList<>();
+		List<TweetEvent> changes = new ArrayList<>();
+		int deletes = 0;
+		for (ConsumerRecord<String, TweetEvent> record : records) {
+			// null when the event type is newer than this app
+			TweetEvent event = record.value();
+			if (event == null) {
+				continue;
+			}
+			if (event.getType() == TweetEventType.TWEET_DELETED) {
+				deleted.add(event.getTweetId());
+				deletes++;
+				tombstones.upsert(Query.query(Criteria.where("tweetId").is(event.getTweetId())),
+						new Update().setOnInsert("deletedAt", event.getOccurredAt() != null ? event.getOccurredAt()
+								: Instant.now()));
+			} else if (deleted.contains(event.getTweetId())) {
+				continue;
+			}
+			int operations = apply(bulk, event);
+			if (operations > 0) {
+				changes.add(event);
+			}
+			for (; operations > 0; operations--) {
+				written.add(record);
+			}
+		}
+		if (written.isEmpty()) {
+			return;
+		}
+		if (deletes > 0) {
+			// before the views: a retried batch must still see the tweets as deleted
+			tombstones.execute();
+		}
+		try {
+			bulk.execute();
+		} catch (BulkOperationException e) {
+			// the operations before it are applied, the record is retried alone and then dead-lettered
+			throw new BatchListenerFailedException("View rejected a tweet event", e,
+					written.get(e.getErrors().get(0).getIndex()));
+		}
+		Instant now = Instant.now();
+		for (TweetEvent event : changes) {
+			if (event.getOccurredAt() != null) {
+				lag.record(Duration.between(event.getOccurredAt(), now));
+			}
+		}
+		applied.increment(changes.size());
+		batch.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+		logger.debug("Projected {} tweet events", changes.size());
+	}
+
+	/**
+	 * @return ids of the batch's tweets deleted by an earlier batch
+	 */
+	private Set<String> findTombstones(List<ConsumerRecord<String, TweetEvent>> records) {
+		Set<String> tweetIds = new HashSet<>();
+		records.forEach(record -> {
+			if (record.value() != null) {
+				tweetIds.add(record.value().getTweetId());
+			}
+		});
+		Set<String> deleted = new HashSet<>();
+		if (!tweetIds.isEmpty()) {
+			mongoTemplate.find(Query.query(Criteria.where("tweetId").in(tweetIds)), TweetTombstone.class)
+					.forEach(tombstone -> deleted.add(tombstone.getTweetId()));
+		}
+		return deleted;
+	}
+
+	/**
+	 * Adds the view change for one event to the bulk write
+	 *
+	 * @return number of operations added, 0 when the event does not change the view
+	 */
+	private int apply(BulkOperations bulk, TweetEvent event) {
+		Query tweet = Query.query(Criteria.where("tweetId").is(event.getTweetId()));
+		switch (event.getType()) {
+		case TWEET_CREATED:
+			bulk.upsert(tweet, new Update().set("username", event.getUsername())
+					.set("tweetText", event.getText()).set("firstName", event.getFirstName())
+					.set("lastName", event.getLastName())
+					.set("tweetDate", event.getTweetDate() != null ? event.getTweetDate()
+							: String.valueOf(event.getOccurredAt()))
+					.set("createdAt", event.getOccurredAt()).setOnInsert("likesCount", 0)
+					.setOnInsert("commentsCount", 0));
+			return 1;
+		case TWEET_UPDATED:
+			bulk.upsert(tweet, new Update().set("tweetText", event.getText()));
+			return 1;
+		case TWEET_DELETED:
+			bulk.remove(tweet);
+			return 1;
+		case TWEET_LIKED:
+		case TWEET_UNLIKED:
+			bulk.upsert(tweet, new Update().set("likesCount", event.getLikesCount()));
+			return 1;
+		case COMMENT_ADDED:
+			Comment comment = new Comment(event.getTweetId(), event.getUsername(), event.getText(),
+					event.getOccurredAt());
+			comment.setCommentId(event.getCommentId());
+			bulk.upsert(tweet, new Update().set("commentsCount", event.getCommentsCount()));
+			// the filter skips a comment already in the preview, so a replay does not add it twice
+			bulk.updateOne(
+					Query.query(Criteria.where("tweetId").is(event.getTweetId()).and("recentComments.commentId")
+							.ne(event.getCommentId())),
+					new Update().push("recentComments").slice(-commentPreviewSize).each(comment));
+			return 2;
+		default:
+			return 0;
+		}
+	}
+}
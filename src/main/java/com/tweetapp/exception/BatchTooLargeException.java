@@ -0,0 +1,17 @@
+package com.tweetapp.exception;
+
+/**
+ * @author Tarun Prajapat
+ */
+public class BatchTooLargeException extends Exception {
+
+	/**
+	 * This exception is thrown when a batch request holds more items than
+	 * tweetapp.batch.max-size
+	 */
+	private static final long serialVersionUID = 1L;
+
+	public BatchTooLargeException(String msg) {
+		super(msg);
+	}
+}
@@ -0,0 +1,16 @@
+package com.tweetapp.exception;
+
+/**
+ * @author Tarun Prajapat
+ */
+public class InvalidCursorException extends Exception {
+
+	/**
+	 * This exception is thrown when a pagination cursor cannot be decoded
+	 */
+	private static final long serialVersionUID = 1L;
+
+	public InvalidCursorException(String msg) {
+		super(msg);
+	}
+}
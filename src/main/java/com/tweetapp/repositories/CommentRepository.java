@@ -0,0 +1,42 @@
+package com.tweetapp.repositories;
+
+import java.time.Instant;
+import java.util.List;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.data.mongodb.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import com.tweetapp.dto.Comment;
+
+/**
+ * Persistance Layer for Comment
+ * @author Tarun Prajapat
+ */
+@Repository
+public interface CommentRepository extends MongoRepository<Comment, String> {
+
+	/**
+	 * @return first page of comments of a tweet, ordered by the given pageable
+	 * */
+	List<Comment> findByTweetId(String tweetId, Pageable pageable);
+
+	/**
+	 * Keyset query backed by the (tweetId, createdAt, _id) index
+	 * 
+	 * @return comments of a tweet older than the given cursor position
+	 * */
+	@Query("{ 'tweetId': ?0, '$or': [ { 'createdAt': { '$lt': ?1 } }, { 'createdAt': ?1, '_id': { '$lt': ?2 } } ] }")
+	List<Comment> findPageAfter(String tweetId, Instant createdAt, String commentId, Pageable pageable);
+
+	/**
+	 * @return number of comments of a tweet
+	 * */
+	long countByTweetId(String tweetId);
+
+	/**
+	 * @return number of comments removed with the tweet
+	 * */
+	long deleteByTweetId(String tweetId);
+}
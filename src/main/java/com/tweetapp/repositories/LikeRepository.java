@@ -0,0 +1,57 @@
+package com.tweetapp.repositories;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.data.mongodb.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import com.tweetapp.dto.Like;
+
+/**
+ * Persistance Layer for Like
+ * @author Tarun Prajapat
+ */
+@Repository
+public interface LikeRepository extends MongoRepository<Like, String> {
+
+	/**
+	 * @return true when the user has liked the tweet
+	 * */
+	boolean existsByTweetIdAndUsername(String tweetId, String username);
+
+	/**
+	 * Bulk lookup used to render a feed page, covered by the tweetId_username index
+	 * 
+	 * @return likes of the user among the given tweets, only tweetId is populated
+	 * */
+	@Query(value = "{ 'tweetId': { '$in': ?1 }, 'username': ?0 }", fields = "{ 'tweetId': 1, '_id': 0 }")
+	List<Like> findByUsernameAndTweetIdIn(String username, Collection<String> tweetIds);
+
+	/**
+	 * @return number of likes removed, 0 or 1
+	 * */
+	long deleteByTweetIdAndUsername(String tweetId, String username);
+
+	/**
+	 * Unlike that leaves alone a like BulkLikeWriter has claimed for removal,
+	 * so only one of them decrements likesCount
+	 * 
+	 * @return number of likes removed, 0 or 1
+	 * */
+	@Query(value = "{ 'tweetId': ?0, 'username': ?1, '$or': [ { 'unlikeClaimedUntil': { '$exists': false } }, "
+			+ "{ 'unlikeClaimedUntil': { '$lt': ?2 } } ] }", delete = true)
+	long deleteUnclaimed(String tweetId, String username, Instant now);
+
+	/**
+	 * @return number of likes removed with the tweet
+	 * */
+	long deleteByTweetId(String tweetId);
+
+	/**
+	 * @return number of likes of a tweet
+	 * */
+	long countByTweetId(String tweetId);
+}
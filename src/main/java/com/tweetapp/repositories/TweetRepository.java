@@ -5,23 +5,14 @@ import org.springframework.stereotype.Repository;
 
 import com.tweetapp.entities.Tweet;
 import java.lang.String;
-import java.util.List;
 
 /**
  * @author Tarun Prajapat
  * 
- * Persistance Layer for Tweet
+ * Persistance Layer for Tweet, the write model. Feeds are read from
+ * TweetViewRepository.
  */
 @Repository
 public interface TweetRepository extends MongoRepository<Tweet, String> {
-	/**
-	 * 
-	 * @return list of tweets done by user
-	 * */
-	List<Tweet> findByUsername(String username);
 
-	/**
-	 * @return list of tweets available with tweetID
-	 * */
-	List<Tweet> findByTweetId(String tweetId);
 }
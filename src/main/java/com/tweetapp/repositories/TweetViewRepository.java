@@ -0,0 +1,80 @@
+package com.tweetapp.repositories;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.repository.Meta;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.data.mongodb.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import com.tweetapp.entities.TweetView;
+import java.time.Instant;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * @author Tarun Prajapat
+ * 
+ * Persistance Layer for the feed read model, maintained by TweetViewProjector
+ */
+@Repository
+public interface TweetViewRepository extends MongoRepository<TweetView, String> {
+
+	/**
+	 * 
+	 * @return first page of tweets done by user, backed by the user_timeline index
+	 * */
+	List<TweetView> findByUsername(String username, Pageable pageable);
+
+	/**
+	 * Keyset query backed by the (username, createdAt, _id) user_timeline index
+	 * 
+	 * @return tweets done by user older than the given cursor position
+	 * */
+	@Query("{ 'username': ?0, '$or': [ { 'createdAt': { '$lt': ?1 } }, { 'createdAt': ?1, '_id': { '$lt': ?2 } } ] }")
+	List<TweetView> findUserTimelineAfter(String username, Instant createdAt, String tweetId, Pageable pageable);
+
+	/**
+	 * @return first page of the timeline, ordered by the given pageable
+	 * */
+	@Query("{}")
+	List<TweetView> findAllBy(Pageable pageable);
+
+	/**
+	 * Keyset query backed by the (createdAt, _id) timeline index
+	 * 
+	 * @return tweets older than the given cursor position
+	 * */
+	@Query("{ '$or': [ { 'createdAt': { '$lt': ?0 } }, { 'createdAt': ?0, '_id': { '$lt': ?1 } } ] }")
+	List<TweetView> findTimelineAfter(Instant createdAt, String tweetId, Pageable pageable);
+
+	/**
+	 * @return first page of tweets created after the given instant
+	 * */
+	List<TweetView> findByCreatedAtAfter(Instant since, Pageable pageable);
+
+	/**
+	 * Keyset query limited to tweets created after since
+	 * 
+	 * @return tweets older than the cursor position but newer than since
+	 * */
+	@Query("{ 'createdAt': { '$gt': ?0 }, '$or': [ { 'createdAt': { '$lt': ?1 } }, "
+			+ "{ 'createdAt': ?1, '_id': { '$lt': ?2 } } ] }")
+	List<TweetView> findTimelineBetween(Instant since, Instant createdAt, String tweetId, Pageable pageable);
+
+	/**
+	 * Whole timeline for streaming responses, read batch by batch from the
+	 * server cursor; the caller must close the stream
+	 * 
+	 * @return cursor backed stream over all tweets in the given order
+	 * */
+	@Query("{}")
+	@Meta(cursorBatchSize = 500)
+	Stream<TweetView> streamAllBy(Sort sort);
+
+	/**
+	 * @return cursor backed stream over all tweets done by user, backed by the user_timeline index
+	 * */
+	@Meta(cursorBatchSize = 500)
+	Stream<TweetView> streamByUsername(String username, Sort sort);
+}
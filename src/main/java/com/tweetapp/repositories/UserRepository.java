@@ -1,6 +1,13 @@
 package com.tweetapp.repositories;
 
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.repository.Meta;
 import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.data.mongodb.repository.Query;
 import org.springframework.stereotype.Repository;
 
 import com.tweetapp.entities.UserModel;
@@ -12,9 +19,34 @@ import com.tweetapp.entities.UserModel;
 @Repository
 public interface UserRepository extends MongoRepository<UserModel, String> {
 
+	// username is the @Id, look users up with findById / existsById
+
+	/**
+	 * Directory projection, only public fields leave the database
+	 * */
+	String DIRECTORY_FIELDS = "{ 'firstName': 1, 'lastName': 1 }";
+
+	/**
+	 * A List, not a Stream: stream queries ignore the pageable's limit
+	 * 
+	 * @return the first users in the pageable's order
+	 * */
+	@Query(value = "{}", fields = DIRECTORY_FIELDS)
+	List<UserModel> findAllBy(Pageable pageable);
+
+	/**
+	 * Keyset query on the _id index
+	 * 
+	 * @return the first users after the given username in the pageable's order
+	 * */
+	@Query(value = "{ '_id': { '$gt': ?0 } }", fields = DIRECTORY_FIELDS)
+	List<UserModel> findByUsernameAfter(String username, Pageable pageable);
+
 	/**
-	 * @return userModel for respective username
+	 * @return cursor backed stream over every user in the given order
 	 * */
-	UserModel findByUsername(String username);
+	@Query(value = "{}", fields = DIRECTORY_FIELDS)
+	@Meta(cursorBatchSize = 500)
+	Stream<UserModel> streamAllBy(Sort sort);
 
 }
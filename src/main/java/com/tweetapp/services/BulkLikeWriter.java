@@ -0,0 +1,238 @@
+package com.tweetapp.services;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.BulkOperations.BulkMode;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import com.mongodb.bulk.BulkWriteResult;
+import com.tweetapp.dto.Like;
+import com.tweetapp.entities.Tweet;
+import com.tweetapp.events.OutboxEvent;
+import com.tweetapp.events.TweetEvent;
+import com.tweetapp.utils.SortableIdGenerator;
+
+/**
+ * Applies many like and unlike intents with a fixed number of round trips,
+ * whatever their count: one read of the tweets and existing likes, one
+ * unordered bulk write on likes, a read and a remove of the claimed likes
+ * when there are unlikes, one bulk $inc on the tweets' likesCount and
+ * one read of the resulting counters. The like events go into the tweets'
+ * outboxes in the same $inc, like TweetService does for single likes.
+ *
+ * The unique (tweetId, username) index still decides which likes are new. A
+ * like that loses a race against a concurrent one fails with a duplicate key
+ * and simply counts as already liked. Unlikes first claim their likes in the
+ * same bulk write, then this writer removes the likes it holds the claim of,
+ * so it knows exactly which pairs it removed; dislikeTweet skips claimed
+ * likes. likesCount only ever changes by $inc of those exact deltas. A claim
+ * a crashed writer left behind can be taken over after
+ * tweetapp.likes.unlike-claim-timeout-ms.
+ *
+ * @author Tarun Prajapat
+ */
+@Service
+public class BulkLikeWriter {
+
+	private static final int DUPLICATE_KEY = 11000;
+
+//	Injected MongoTemplate bean
+	@Autowired
+	private MongoTemplate mongoTemplate;
+
+//	Injected SortableIdGenerator bean
+	@Autowired
+	private SortableIdGenerator idGenerator;
+
+//	Injected HotTweetCache bean
+	@Autowired
+	private HotTweetCache hotTweetCache;
+
+	@Value("${tweetapp.likes.unlike-claim-timeout-ms:60000}")
+	private long claimTimeoutMs;
+
+	Logger logger = LoggerFactory.getLogger(BulkLikeWriter.class);
+
+	/**
+	 * Every (tweetId, username) pair may appear once, either in likes or in
+	 * unlikes. Intents on tweets that do not exist are dropped.
+	 *
+	 * @return likesCount after the write for every tweet that exists
+	 */
+	public Map<String, Integer> apply(Collection<Like> likes, Collection<Like> unlikes) {
+		Set<String> tweetIds = new HashSet<>();
+		Set<String> usernames = new HashSet<>();
+		Stream.concat(likes.stream(), unlikes.stream()).forEach(like -> {
+			tweetIds.add(like.getTweetId());
+			usernames.add(like.getUsername());
+		});
+		if (tweetIds.isEmpty()) {
+			return Collections.emptyMap();
+		}
+		Set<String> existing = findExisting(tweetIds);
+		Set<String> liked = findLiked(existing, usernames);
+
+		// upserts first, so the index of an upsert in the result is its index in upserted
+		BulkOperations bulk = mongoTemplate.bulkOps(BulkMode.UNORDERED, Like.class);
+		List<Like> upserted = new ArrayList<>();
+		for (Like like : likes) {
+			if (existing.contains(like.getTweetId()) && !liked.contains(keyOf(like))) {
+				bulk.upsert(byLike(like), new Update().setOnInsert("likedAt", like.getLikedAt()));
+				upserted.add(like);
+			}
+		}
+		Instant now = Instant.now();
+		String claim = idGenerator.nextId();
+		int claims = 0;
+		for (Like unlike : unlikes) {
+			if (existing.contains(unlike.getTweetId()) && liked.contains(keyOf(unlike))) {
+				bulk.updateOne(claimable(unlike, now), new Update().set("unlikeClaim", claim)
+						.set("unlikeClaimedUntil", now.plusMillis(claimTimeoutMs)));
+				claims++;
+			}
+		}
+		if (upserted.isEmpty() && claims == 0) {
+			return findCounts(existing);
+		}
+		BulkWriteResult result = execute(bulk);
+
+		List<Like> newLikes = result.getUpserts().stream().map(upsert -> upserted.get(upsert.getIndex()))
+				.collect(Collectors.toList());
+		List<Like> removed = claims == 0 ? Collections.emptyList() : removeClaimed(claim);
+		Map<String, Integer> deltas = new HashMap<>();
+		newLikes.forEach(like -> deltas.merge(like.getTweetId(), 1, Integer::sum));
+		removed.forEach(unlike -> deltas.merge(unlike.getTweetId(), -1, Integer::sum));
+		Map<String, List<TweetEvent>> events = new HashMap<>();
+		newLikes.forEach(like -> events.computeIfAbsent(like.getTweetId(), tweetId -> new ArrayList<>())
+				.add(TweetEvent.tweetLiked(like.getTweetId(), like.getUsername(), null)));
+		removed.forEach(unlike -> events.computeIfAbsent(unlike.getTweetId(), tweetId -> new ArrayList<>())
+				.add(TweetEvent.tweetUnliked(unlike.getTweetId(), unlike.getUsername(), null)));
+		updateCounters(deltas, events);
+
+		Map<String, Integer> counts = findCounts(existing);
+		events.keySet().forEach(tweetId -> hotTweetCache.updateCounters(tweetId, counts.get(tweetId), null));
+		logger.debug("Applied {} likes and {} unlikes on {} tweets", newLikes.size(), removed.size(), events.size());
+		return counts;
+	}
+
+	private BulkWriteResult execute(BulkOperations bulk) {
+		try {
+			return bulk.execute();
+		} catch (BulkOperationException e) {
+			if (!e.getErrors().stream().allMatch(error -> error.getCode() == DUPLICATE_KEY)) {
+				throw e;
+			}
+			// lost races against concurrent likes, those pairs are liked already
+			return e.getResult();
+		}
+	}
+
+	/**
+	 * One update per tweet: its likesCount change and its events
+	 */
+	private void updateCounters(Map<String, Integer> deltas, Map<String, List<TweetEvent>> events) {
+		BulkOperations counters = mongoTemplate.bulkOps(BulkMode.UNORDERED, Tweet.class);
+		for (Map.Entry<String, List<TweetEvent>> tweetEvents : events.entrySet()) {
+			String tweetId = tweetEvents.getKey();
+			Update update = new Update();
+			if (deltas.getOrDefault(tweetId, 0) != 0) {
+				update.inc("likesCount", deltas.get(tweetId));
+			}
+			List<OutboxEvent> outbox = tweetEvents.getValue().stream()
+					.map(event -> new OutboxEvent(idGenerator.nextId(), event)).collect(Collectors.toList());
+			update.push("outbox").each(outbox.toArray());
+			counters.updateOne(byTweetId(tweetId), update);
+		}
+		if (!events.isEmpty()) {
+			counters.execute();
+		}
+	}
+
+	/**
+	 * Removes the likes this write claimed. A like is only claimed once, so
+	 * each of them is removed, and counted, by exactly one writer.
+	 *
+	 * @return the removed likes, only tweetId and username are populated
+	 */
+	private List<Like> removeClaimed(String claim) {
+		Query query = Query.query(Criteria.where("unlikeClaim").is(claim));
+		query.fields().include("tweetId").include("username").exclude("_id");
+		List<Like> claimed = mongoTemplate.find(query, Like.class);
+		if (!claimed.isEmpty()) {
+			mongoTemplate.remove(Query.query(Criteria.where("unlikeClaim").is(claim)), Like.class);
+		}
+		return claimed;
+	}
+
+	/**
+	 * @return the given tweetIds that still exist
+	 */
+	private Set<String> findExisting(Set<String> tweetIds) {
+		Query query = Query.query(Criteria.where("tweetId").in(tweetIds).and("deletedAt").exists(false));
+		query.fields().include("tweetId");
+		return mongoTemplate.find(query, Tweet.class).stream().map(Tweet::getTweetId).collect(Collectors.toSet());
+	}
+
+	/**
+	 * @return keyOf of the existing likes among the given tweets and users
+	 */
+	private Set<String> findLiked(Set<String> tweetIds, Set<String> usernames) {
+		if (tweetIds.isEmpty()) {
+			return Collections.emptySet();
+		}
+		Query query = Query.query(Criteria.where("tweetId").in(tweetIds).and("username").in(usernames));
+		query.fields().include("tweetId").include("username").exclude("_id");
+		return mongoTemplate.find(query, Like.class).stream().map(this::keyOf).collect(Collectors.toSet());
+	}
+
+	private Map<String, Integer> findCounts(Set<String> tweetIds) {
+		Map<String, Integer> counts = new HashMap<>();
+		if (tweetIds.isEmpty()) {
+			return counts;
+		}
+		Query query = Query.query(Criteria.where("tweetId").in(tweetIds).and("deletedAt").exists(false));
+		query.fields().include("likesCount");
+		mongoTemplate.find(query, Tweet.class).forEach(
+				tweet -> counts.put(tweet.getTweetId(), tweet.getLikesCount() == null ? 0 : tweet.getLikesCount()));
+		return counts;
+	}
+
+	private String keyOf(Like like) {
+		// tweetIds are hex, so the first slash always ends the tweetId
+		return like.getTweetId() + "/" + like.getUsername();
+	}
+
+	private Query byLike(Like like) {
+		return Query.query(Criteria.where("tweetId").is(like.getTweetId()).and("username").is(like.getUsername()));
+	}
+
+	private Query claimable(Like like, Instant now) {
+		return Query.query(Criteria.where("tweetId").is(like.getTweetId()).and("username").is(like.getUsername())
+				.orOperator(Criteria.where("unlikeClaimedUntil").exists(false),
+						Criteria.where("unlikeClaimedUntil").lt(now)));
+	}
+
+	private Query byTweetId(String tweetId) {
+		return Query.query(Criteria.where("tweetId").is(tweetId).and("deletedAt").exists(false));
+	}
+}
@@ -0,0 +1,48 @@
+package com.tweetapp.services;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.stereotype.Component;
+
+import com.tweetapp.entities.UserModel;
+import com.tweetapp.repositories.UserRepository;
+
+/**
+ * Read-through cache of users by username, for login, profile and
+ * authentication lookups. Backed by whatever CacheManager is configured (a
+ * size and TTL bounded Caffeine cache by default, see spring.cache.* in
+ * application.properties), so a shared tier can be added without touching
+ * callers. Every path that changes a user must call evict.
+ *
+ * Cached instances are shared: callers must not modify them.
+ * 
+ * @author Tarun Prajapat
+ */
+@Component
+public class CachedUserLookup {
+
+	public static final String USERS_CACHE = "users";
+
+//	Injected UserRepository bean
+	@Autowired
+	private UserRepository userRepository;
+
+	Logger logger = LoggerFactory.getLogger(CachedUserLookup.class);
+
+	/**
+	 * @return user with the given username, null when there is none (not cached)
+	 */
+	@Cacheable(cacheNames = USERS_CACHE, key = "#username", unless = "#result == null")
+	public UserModel findUser(String username) {
+		logger.debug("Loading user {} from Mongo", username);
+		return username == null ? null : userRepository.findById(username).orElse(null);
+	}
+
+	@CacheEvict(cacheNames = USERS_CACHE, key = "#username")
+	public void evict(String username) {
+		logger.debug("Evicted user {}", username);
+	}
+}
@@ -0,0 +1,131 @@
+package com.tweetapp.services;
+
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import com.tweetapp.entities.Tweet;
+import com.tweetapp.entities.TweetView;
+import com.tweetapp.events.CacheInvalidationBus;
+import com.tweetapp.repositories.TweetViewRepository;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+
+/**
+ * Short lived cache of tweet details for getTweet, the hot key of a viral
+ * tweet. Concurrent misses on a tweetId share one Mongo load. After
+ * tweetapp.hot-tweets.refresh-after-ms the cached tweet is still served while
+ * one background load refreshes it, so a hot tweet costs about one query per
+ * refresh interval whatever the request rate; entries not read for
+ * expire-after-ms are dropped and loaded again on the next read.
+ *
+ * Tweets that do not exist are cached too, as empty. Every path that edits
+ * or deletes a tweet must call evict; other instances evict on the tweets
+ * messages of CacheInvalidationBus. Likes and comments only change counters
+ * and do not evict, so a viral tweet is not reloaded on every like: the
+ * instance that wrote them calls updateCounters, other instances pick them
+ * up on refresh. Cached views are shared: callers must not modify them.
+ * Metrics: cache.* tagged cache=hot-tweets.
+ *
+ * @author Tarun Prajapat
+ */
+@Component
+public class HotTweetCache {
+
+	public static final String CACHE_NAME = "hot-tweets";
+
+	private final TweetViewRepository tweetViewRepository;
+
+	private final MongoTemplate mongoTemplate;
+
+	private final ExecutorService refreshExecutor;
+
+	private final LoadingCache<String, Optional<TweetView>> cache;
+
+	Logger logger = LoggerFactory.getLogger(HotTweetCache.class);
+
+	public HotTweetCache(TweetViewRepository tweetViewRepository, MongoTemplate mongoTemplate,
+			CacheInvalidationBus invalidationBus, MeterRegistry meterRegistry,
+			@Value("${tweetapp.hot-tweets.max-size:10000}") long maxSize,
+			@Value("${tweetapp.hot-tweets.refresh-after-ms:1000}") long refreshAfterMs,
+			@Value("${tweetapp.hot-tweets.expire-after-ms:10000}") long expireAfterMs,
+			@Value("${tweetapp.hot-tweets.refresh-threads:2}") int refreshThreads) {
+		this.tweetViewRepository = tweetViewRepository;
+		this.mongoTemplate = mongoTemplate;
+		// refreshes block on Mongo, keep them off the common fork join pool
+		this.refreshExecutor = Executors.newFixedThreadPool(refreshThreads,
+				new CustomizableThreadFactory("hot-tweets-refresh-"));
+		this.cache = Caffeine.newBuilder().maximumSize(maxSize)
+				.refreshAfterWrite(refreshAfterMs, TimeUnit.MILLISECONDS)
+				.expireAfterAccess(expireAfterMs, TimeUnit.MILLISECONDS).executor(refreshExecutor).recordStats()
+				.build(this::load);
+		CaffeineCacheMetrics.monitor(meterRegistry, cache, CACHE_NAME);
+		invalidationBus.onInvalidate(CacheInvalidationBus.TWEETS, this::evict);
+	}
+
+	/**
+	 * @return tweet from the read model, or from the Tweet collection when it is
+	 *         not projected yet; empty when it does not exist
+	 */
+	public Optional<TweetView> get(String tweetId) {
+		return cache.get(tweetId);
+	}
+
+	public void evict(String tweetId) {
+		cache.invalidate(tweetId);
+	}
+
+	/**
+	 * Puts counters this instance just wrote into the cached tweet, if it is
+	 * cached, so the user who liked or replied sees them right away. Not a
+	 * refresh: the read model it loads from is only projected a moment later.
+	 * A null counter is left as it is.
+	 */
+	public void updateCounters(String tweetId, Integer likesCount, Integer commentsCount) {
+		cache.asMap().computeIfPresent(tweetId, (id, cached) -> cached.map(view -> {
+			TweetView updated = new TweetView(view.getTweetId(), view.getUsername(), view.getTweetText(),
+					view.getFirstName(), view.getLastName(), view.getTweetDate(), view.getCreatedAt(),
+					view.getLikesCount(), view.getCommentsCount(), view.getRecentComments());
+			if (likesCount != null) {
+				updated.setLikesCount(likesCount);
+			}
+			if (commentsCount != null) {
+				updated.setCommentsCount(commentsCount);
+			}
+			return updated;
+		}));
+	}
+
+	private Optional<TweetView> load(String tweetId) {
+		logger.debug("Loading tweet {} from Mongo", tweetId);
+		TweetView tweet = tweetViewRepository.findById(tweetId).orElse(null);
+		if (tweet == null) {
+			// not projected yet, e.g. opened right after posting
+			Query query = Query.query(Criteria.where("tweetId").is(tweetId).and("deletedAt").exists(false));
+			query.fields().exclude("outbox");
+			Tweet written = mongoTemplate.findOne(query, Tweet.class);
+			tweet = written == null ? null : TweetView.of(written);
+		}
+		return Optional.ofNullable(tweet);
+	}
+
+	@PreDestroy
+	public void close() {
+		refreshExecutor.shutdownNow();
+	}
+}
@@ -0,0 +1,347 @@
+package com.tweetapp.services;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import com.tweetapp.dto.Like;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Optional write-behind mode for likes (tweetapp.likes.write-behind.enabled).
+ * A like or unlike only records the intent in memory; every flush interval
+ * the net intents are written through BulkLikeWriter, so a burst of thousands
+ * of likes on one tweet becomes one bulk write and one $inc instead of
+ * thousands of findAndModify calls on the same document.
+ *
+ * Intents live in stripes keyed by tweetId, each guarded by its own monitor.
+ * Per (tweet, user) only the latest intent is kept. Reads overlay pending
+ * intents: likeStatus is exact for the user who sent it, likesCount assumes
+ * the first intent of a pair changed the stored state and is corrected by
+ * the flush.
+ *
+ * Staleness is bounded by the flush interval. A failed flush is merged back
+ * and retried, and the buffer is flushed on shutdown after the web server
+ * has stopped taking requests and before the event publisher stops.
+ * Metrics: tweetapp.likes.pending (gauge), .coalesced, .flush and
+ * .flush.failed.
+ *
+ * @author Tarun Prajapat
+ */
+@Service
+public class LikeBuffer implements SmartLifecycle {
+
+	// stops after the web server (Integer.MAX_VALUE - 1), so no intent arrives after the last flush
+	private static final int PHASE = Integer.MAX_VALUE - 500;
+
+	private final BulkLikeWriter bulkLikeWriter;
+
+	private final boolean enabled;
+
+	private final int maxPending;
+
+	private final int flushBatchSize;
+
+	private final Stripe[] stripes;
+
+	/**
+	 * (tweet, user) pairs waiting in pending and flushing maps
+	 */
+	private final AtomicInteger pending = new AtomicInteger();
+
+	private final Object flushLock = new Object();
+
+	private final Counter coalesced;
+
+	private final Counter flushFailed;
+
+	private final Timer flushTimer;
+
+	private volatile boolean running;
+
+	Logger logger = LoggerFactory.getLogger(LikeBuffer.class);
+
+	public LikeBuffer(BulkLikeWriter bulkLikeWriter, MeterRegistry meterRegistry,
+			@Value("${tweetapp.likes.write-behind.enabled:false}") boolean enabled,
+			@Value("${tweetapp.likes.write-behind.stripes:64}") int stripeCount,
+			@Value("${tweetapp.likes.write-behind.max-pending:100000}") int maxPending,
+			@Value("${tweetapp.likes.write-behind.flush-batch-size:1000}") int flushBatchSize) {
+		this.bulkLikeWriter = bulkLikeWriter;
+		this.enabled = enabled;
+		this.maxPending = maxPending;
+		this.flushBatchSize = flushBatchSize;
+		this.stripes = new Stripe[stripeCount];
+		for (int i = 0; i < stripeCount; i++) {
+			stripes[i] = new Stripe();
+		}
+		meterRegistry.gauge("tweetapp.likes.pending", pending);
+		this.coalesced = meterRegistry.counter("tweetapp.likes.coalesced");
+		this.flushFailed = meterRegistry.counter("tweetapp.likes.flush.failed");
+		this.flushTimer = meterRegistry.timer("tweetapp.likes.flush");
+	}
+
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * Records a like (true) or unlike (false). A pair already pending is
+	 * always updated in place, so its intents keep their order.
+	 *
+	 * @return false when a new pair cannot be taken because the buffer is
+	 *         disabled, stopped or full; the caller writes through then
+	 */
+	public boolean record(String tweetId, String username, boolean like) {
+		if (!enabled) {
+			return false;
+		}
+		Stripe stripe = stripeOf(tweetId);
+		synchronized (stripe) {
+			TweetIntents intents = stripe.pending.get(tweetId);
+			Intent intent = intents == null ? null : intents.byUser.get(username);
+			if (intent != null) {
+				intents.delta += valueOf(like) - valueOf(intent.current);
+				intent.current = like;
+				coalesced.increment();
+				return true;
+			}
+			if (!running || pending.get() >= maxPending) {
+				return false;
+			}
+			// the pair chains on an in-flight intent, otherwise we assume this one changes the stored state
+			Intent inFlight = intentOf(stripe.flushing, tweetId, username);
+			boolean origin = inFlight != null ? inFlight.current : !like;
+			if (intents == null) {
+				intents = new TweetIntents();
+				stripe.pending.put(tweetId, intents);
+			}
+			intents.byUser.put(username, new Intent(origin, like));
+			intents.delta += valueOf(like) - valueOf(origin);
+			pending.incrementAndGet();
+			return true;
+		}
+	}
+
+	/**
+	 * @return latest unflushed intent of the user on the tweet, null when there is none
+	 */
+	public Boolean pendingIntent(String tweetId, String username) {
+		if (!enabled || username == null) {
+			return null;
+		}
+		Stripe stripe = stripeOf(tweetId);
+		synchronized (stripe) {
+			Intent intent = intentOf(stripe.pending, tweetId, username);
+			if (intent == null) {
+				intent = intentOf(stripe.flushing, tweetId, username);
+			}
+			return intent == null ? null : intent.current;
+		}
+	}
+
+	/**
+	 * @return estimated change of the tweet's likesCount not written yet
+	 */
+	public int pendingDelta(String tweetId) {
+		if (!enabled) {
+			return 0;
+		}
+		Stripe stripe = stripeOf(tweetId);
+		synchronized (stripe) {
+			TweetIntents pendingIntents = stripe.pending.get(tweetId);
+			TweetIntents flushingIntents = stripe.flushing.get(tweetId);
+			return (pendingIntents == null ? 0 : pendingIntents.delta)
+					+ (flushingIntents == null ? 0 : flushingIntents.delta);
+		}
+	}
+
+	/**
+	 * Writes every pending intent with BulkLikeWriter, in batches of
+	 * tweetapp.likes.write-behind.flush-batch-size pairs. Intents stay visible
+	 * to reads until their write is done.
+	 */
+	@Scheduled(fixedDelayString = "${tweetapp.likes.write-behind.flush-interval-ms:500}")
+	public void flush() {
+		if (!enabled) {
+			return;
+		}
+		synchronized (flushLock) {
+			List<Like> likes = new ArrayList<>();
+			List<Like> unlikes = new ArrayList<>();
+			for (Stripe stripe : stripes) {
+				synchronized (stripe) {
+					if (stripe.pending.isEmpty()) {
+						continue;
+					}
+					stripe.flushing = stripe.pending;
+					stripe.pending = new HashMap<>();
+				}
+				// never modified once flushing, so read outside the monitor; every pair is written since
+				// origin is only assumed, the writer skips those already in the wanted state
+				stripe.flushing.forEach((tweetId, intents) -> intents.byUser.forEach(
+						(username, intent) -> (intent.current ? likes : unlikes).add(new Like(tweetId, username))));
+			}
+			if (likes.isEmpty() && unlikes.isEmpty()) {
+				release();
+				return;
+			}
+			long start = System.nanoTime();
+			try {
+				write(likes, true);
+				write(unlikes, false);
+				release();
+				logger.debug("Flushed {} likes and {} unlikes", likes.size(), unlikes.size());
+			} catch (RuntimeException e) {
+				// writes are idempotent, batches that did go through are harmless to repeat
+				flushFailed.increment();
+				restore();
+				logger.error("Could not flush {} buffered like intents, will retry", likes.size() + unlikes.size(), e);
+			} finally {
+				flushTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+			}
+		}
+	}
+
+	private void write(List<Like> intents, boolean like) {
+		for (int from = 0; from < intents.size(); from += flushBatchSize) {
+			List<Like> batch = intents.subList(from, Math.min(from + flushBatchSize, intents.size()));
+			if (like) {
+				bulkLikeWriter.apply(batch, Collections.<Like>emptyList());
+			} else {
+				bulkLikeWriter.apply(Collections.<Like>emptyList(), batch);
+			}
+		}
+	}
+
+	/**
+	 * Drops the flushing maps once they are written
+	 */
+	private void release() {
+		for (Stripe stripe : stripes) {
+			synchronized (stripe) {
+				stripe.flushing.forEach((tweetId, intents) -> pending.addAndGet(-intents.byUser.size()));
+				stripe.flushing = new HashMap<>();
+			}
+		}
+	}
+
+	/**
+	 * Merges the flushing maps back into the pending ones after a failed
+	 * write. A pair with a newer intent keeps it but takes back the stored
+	 * state as its origin.
+	 */
+	private void restore() {
+		for (Stripe stripe : stripes) {
+			synchronized (stripe) {
+				stripe.flushing.forEach((tweetId, flushed) -> {
+					TweetIntents intents = stripe.pending.get(tweetId);
+					if (intents == null) {
+						stripe.pending.put(tweetId, flushed);
+						return;
+					}
+					flushed.byUser.forEach((username, intent) -> {
+						Intent newer = intents.byUser.get(username);
+						if (newer == null) {
+							intents.byUser.put(username, intent);
+							intents.delta += valueOf(intent.current) - valueOf(intent.origin);
+						} else {
+							intents.delta += valueOf(newer.origin) - valueOf(intent.origin);
+							newer.origin = intent.origin;
+							pending.decrementAndGet();
+						}
+					});
+				});
+				stripe.flushing = new HashMap<>();
+			}
+		}
+	}
+
+	private Stripe stripeOf(String tweetId) {
+		return stripes[(tweetId.hashCode() & 0x7fffffff) % stripes.length];
+	}
+
+	private static Intent intentOf(Map<String, TweetIntents> map, String tweetId, String username) {
+		TweetIntents intents = map.get(tweetId);
+		return intents == null ? null : intents.byUser.get(username);
+	}
+
+	private static int valueOf(boolean liked) {
+		return liked ? 1 : 0;
+	}
+
+	@Override
+	public void start() {
+		running = true;
+	}
+
+	/**
+	 * New pairs go through the synchronous path from here on; what is
+	 * buffered is written before the publisher and Mongo client go away
+	 */
+	@Override
+	public void stop() {
+		running = false;
+		for (int attempt = 0; attempt < 3 && pending.get() > 0; attempt++) {
+			flush();
+		}
+		if (pending.get() > 0) {
+			logger.error("Shutting down with {} like intents that could not be written", pending.get());
+		}
+	}
+
+	@Override
+	public boolean isRunning() {
+		return running;
+	}
+
+	@Override
+	public int getPhase() {
+		return PHASE;
+	}
+
+	private static class Stripe {
+
+		private Map<String, TweetIntents> pending = new HashMap<>();
+
+		private Map<String, TweetIntents> flushing = new HashMap<>();
+	}
+
+	private static class TweetIntents {
+
+		private final Map<String, Intent> byUser = new HashMap<>();
+
+		/**
+		 * Sum of current minus origin over byUser
+		 */
+		private int delta;
+	}
+
+	private static class Intent {
+
+		/**
+		 * Assumed stored state before the first intent
+		 */
+		private boolean origin;
+
+		private boolean current;
+
+		Intent(boolean origin, boolean current) {
+			this.origin = origin;
+			this.current = current;
+		}
+	}
+}
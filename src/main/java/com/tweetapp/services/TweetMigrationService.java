@@ -0,0 +1,358 @@
+package com.tweetapp.services;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+import org.bson.Document;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.BulkOperations.BulkMode;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.AggregationUpdate;
+import org.springframework.data.mongodb.core.aggregation.ArrayOperators;
+import org.springframework.data.mongodb.core.aggregation.ConditionalOperators;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.data.util.CloseableIterator;
+import org.springframework.stereotype.Service;
+
+import com.mongodb.client.result.UpdateResult;
+import com.tweetapp.dto.Comment;
+import com.tweetapp.dto.Like;
+import com.tweetapp.entities.Tweet;
+import com.tweetapp.entities.TweetView;
+import com.tweetapp.repositories.LikeRepository;
+
+/**
+ * One-off data migrations for tweets written by older versions of the app.
+ * They run at startup, before Kafka consumers, scheduled jobs and the web
+ * server start, so no request sees a half migrated tweet.
+ *
+ * One instance at a time migrates, under a leased lock in the migrations
+ * collection; the others wait until it records MIGRATION_VERSION, or take
+ * over once its lease expires. Every step only matches documents that still
+ * need it and writes with deterministic keys, so a run interrupted halfway
+ * is simply run again.
+ * 
+ * @author Tarun Prajapat
+ */
+@Service
+public class TweetMigrationService implements SmartLifecycle {
+
+	/**
+	 * Bump when adding a step, instances that recorded it skip the migration
+	 */
+	private static final int MIGRATION_VERSION = 1;
+
+	private static final String MIGRATIONS = "migrations";
+
+	private static final String MIGRATION_ID = "tweets";
+
+	// starts before everything else, Kafka containers and the web server included
+	private static final int PHASE = Integer.MIN_VALUE;
+
+	private final String owner = UUID.randomUUID().toString();
+
+	private volatile boolean running;
+
+//	Injected MongoTemplate bean
+	@Autowired
+	private MongoTemplate mongoTemplate;
+
+//	Injected LikeRepository bean
+	@Autowired
+	private LikeRepository likeRepository;
+
+	@Value("${tweetapp.comments.preview-size:3}")
+	private int commentPreviewSize;
+
+	@Value("${tweetapp.migration.lease-ms:600000}")
+	private long leaseMs;
+
+	@Value("${tweetapp.migration.poll-interval-ms:1000}")
+	private long pollIntervalMs;
+
+	Logger logger = LoggerFactory.getLogger(TweetMigrationService.class);
+
+	@Override
+	public void start() {
+		migrate();
+		running = true;
+	}
+
+	/**
+	 * Blocks until this or another instance has recorded MIGRATION_VERSION
+	 */
+	public void migrate() {
+		while (recordedVersion() < MIGRATION_VERSION) {
+			if (!tryLock()) {
+				logger.info("Another instance is migrating tweets, waiting for it");
+				sleep();
+				continue;
+			}
+			try {
+				backfillCreatedAt();
+				renewLock();
+				backfillCounters();
+				renewLock();
+				moveEmbeddedLikes();
+				renewLock();
+				moveEmbeddedComments();
+				renewLock();
+				seedTweetView();
+				mongoTemplate.updateFirst(byMigration(), new Update().set("version", MIGRATION_VERSION), MIGRATIONS);
+			} finally {
+				unlock();
+			}
+		}
+	}
+
+	private int recordedVersion() {
+		Document migration = mongoTemplate.findOne(byMigration(), Document.class, MIGRATIONS);
+		return migration == null ? 0 : migration.getInteger("version", 0);
+	}
+
+	/**
+	 * @return true when the lock was free or its lease had expired
+	 */
+	private boolean tryLock() {
+		Date now = new Date();
+		Query free = Query.query(Criteria.where("_id").is(MIGRATION_ID).and("lockedUntil").not().gt(now));
+		try {
+			// upserts the document on the very first run; a held lock makes the upsert hit the _id
+			mongoTemplate.findAndModify(free,
+					new Update().set("owner", owner).set("lockedUntil", new Date(now.getTime() + leaseMs)),
+					FindAndModifyOptions.options().upsert(true).returnNew(true), Document.class, MIGRATIONS);
+			return true;
+		} catch (DuplicateKeyException e) {
+			return false;
+		}
+	}
+
+	private void renewLock() {
+		mongoTemplate.updateFirst(Query.query(Criteria.where("_id").is(MIGRATION_ID).and("owner").is(owner)),
+				new Update().set("lockedUntil", new Date(System.currentTimeMillis() + leaseMs)), MIGRATIONS);
+	}
+
+	private void unlock() {
+		mongoTemplate.updateFirst(Query.query(Criteria.where("_id").is(MIGRATION_ID).and("owner").is(owner)),
+				new Update().unset("owner").unset("lockedUntil"), MIGRATIONS);
+	}
+
+	private Query byMigration() {
+		return Query.query(Criteria.where("_id").is(MIGRATION_ID));
+	}
+
+	private void sleep() {
+		try {
+			Thread.sleep(pollIntervalMs);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while waiting for the tweet migration", e);
+		}
+	}
+
+	@Override
+	public void stop() {
+		running = false;
+	}
+
+	@Override
+	public boolean isRunning() {
+		return running;
+	}
+
+	@Override
+	public int getPhase() {
+		return PHASE;
+	}
+
+	/**
+	 * Gives tweets stored before createdAt existed a value parsed from their
+	 * string tweetDate, so they stay reachable by the keyset timeline queries.
+	 * Dates that cannot be parsed become the epoch and sort last.
+	 */
+	void backfillCreatedAt() {
+		String tweets = mongoTemplate.getCollectionName(Tweet.class);
+		Query legacy = Query.query(Criteria.where("createdAt").exists(false));
+		legacy.fields().include("tweetDate");
+		long backfilled = 0;
+		try (CloseableIterator<Document> cursor = mongoTemplate.stream(legacy, Document.class, tweets)) {
+			while (cursor.hasNext()) {
+				Document tweet = cursor.next();
+				mongoTemplate.updateFirst(Query.query(Criteria.where("_id").is(tweet.get("_id"))),
+						new Update().set("createdAt", parseLegacyDate(tweet.getString("tweetDate"))), tweets);
+				backfilled++;
+			}
+		}
+		if (backfilled > 0) {
+			logger.info("Backfilled createdAt on {} tweets", backfilled);
+		}
+	}
+
+	private Instant parseLegacyDate(String tweetDate) {
+		if (tweetDate == null) {
+			return Instant.EPOCH;
+		}
+		try {
+			return OffsetDateTime.parse(tweetDate).toInstant().truncatedTo(ChronoUnit.MILLIS);
+		} catch (DateTimeParseException e) {
+			// not an offset date time, try the local forms below
+		}
+		try {
+			return LocalDateTime.parse(tweetDate).toInstant(ZoneOffset.UTC).truncatedTo(ChronoUnit.MILLIS);
+		} catch (DateTimeParseException e) {
+			// not a local date time
+		}
+		try {
+			return LocalDate.parse(tweetDate).atStartOfDay().toInstant(ZoneOffset.UTC);
+		} catch (DateTimeParseException e) {
+			logger.debug("Unparseable tweetDate {}, using the epoch", tweetDate);
+			return Instant.EPOCH;
+		}
+	}
+
+	/**
+	 * Sets likesCount/commentsCount from the array sizes, server side, on
+	 * tweets created before the counters existed
+	 */
+	void backfillCounters() {
+		Query legacy = Query.query(new Criteria().orOperator(Criteria.where("likesCount").exists(false),
+				Criteria.where("commentsCount").exists(false)));
+		AggregationUpdate update = AggregationUpdate.update()
+				.set("likesCount").toValue(ArrayOperators.Size.lengthOfArray(
+						ConditionalOperators.ifNull("likes").then(Collections.emptyList())))
+				.set("commentsCount").toValue(ArrayOperators.Size.lengthOfArray(
+						ConditionalOperators.ifNull("comments").then(Collections.emptyList())));
+		UpdateResult result = mongoTemplate.updateMulti(legacy, update, Tweet.class);
+		if (result.getModifiedCount() > 0) {
+			logger.info("Backfilled like/comment counters on {} tweets", result.getModifiedCount());
+		}
+	}
+
+	/**
+	 * Copies the old embedded likes array of each tweet into the likes
+	 * collection, resyncs likesCount from it and drops the array
+	 */
+	void moveEmbeddedLikes() {
+		String tweets = mongoTemplate.getCollectionName(Tweet.class);
+		Query legacy = Query.query(Criteria.where("likes").exists(true));
+		legacy.fields().include("likes");
+		long moved = 0;
+		try (CloseableIterator<Document> cursor = mongoTemplate.stream(legacy, Document.class, tweets)) {
+			while (cursor.hasNext()) {
+				Document tweet = cursor.next();
+				String tweetId = tweet.getString("_id");
+				List<String> likes = tweet.getList("likes", String.class, Collections.emptyList());
+				if (!likes.isEmpty()) {
+					try {
+						mongoTemplate.bulkOps(BulkMode.UNORDERED, Like.class)
+								.insert(likes.stream().distinct().map(username -> new Like(tweetId, username))
+										.collect(Collectors.toList()))
+								.execute();
+					} catch (BulkOperationException e) {
+						// likes already copied by an earlier, interrupted run hit the unique index
+						logger.debug("Skipped {} existing likes of {}", e.getErrors().size(), tweetId);
+					}
+				}
+				int likesCount = (int) likeRepository.countByTweetId(tweetId);
+				mongoTemplate.updateFirst(Query.query(Criteria.where("_id").is(tweetId)),
+						new Update().unset("likes").set("likesCount", likesCount), tweets);
+				moved++;
+			}
+		}
+		if (moved > 0) {
+			logger.info("Moved embedded likes of {} tweets into the likes collection", moved);
+		}
+	}
+
+	/**
+	 * Copies the old embedded comments array of each tweet into the comments
+	 * collection, keeps the latest ones as the preview and drops the array.
+	 * Old comments had no timestamp, so they get the tweet's creation time plus
+	 * their position, which keeps their original order. Their id is the
+	 * tweetId and that position, so copying the same tweet twice upserts the
+	 * same comments.
+	 */
+	void moveEmbeddedComments() {
+		String tweets = mongoTemplate.getCollectionName(Tweet.class);
+		Query legacy = Query.query(Criteria.where("comments").exists(true));
+		legacy.fields().include("comments").include("createdAt");
+		long moved = 0;
+		try (CloseableIterator<Document> cursor = mongoTemplate.stream(legacy, Document.class, tweets)) {
+			while (cursor.hasNext()) {
+				Document tweet = cursor.next();
+				String tweetId = tweet.getString("_id");
+				Date tweetDate = tweet.getDate("createdAt");
+				Instant base = tweetDate == null ? Instant.now().truncatedTo(ChronoUnit.MILLIS) : tweetDate.toInstant();
+				List<Document> embedded = tweet.getList("comments", Document.class, Collections.emptyList());
+				List<Comment> comments = new ArrayList<>();
+				for (int i = 0; i < embedded.size(); i++) {
+					Document old = embedded.get(i);
+					comments.add(new Comment(tweetId + "-" + i, tweetId, old.getString("username"),
+							old.getString("comment"), base.plusMillis(i)));
+				}
+				if (!comments.isEmpty()) {
+					BulkOperations bulk = mongoTemplate.bulkOps(BulkMode.UNORDERED, Comment.class);
+					comments.forEach(comment -> bulk.upsert(
+							Query.query(Criteria.where("_id").is(comment.getCommentId())),
+							new Update().setOnInsert("tweetId", comment.getTweetId())
+									.setOnInsert("username", comment.getUsername())
+									.setOnInsert("comment", comment.getComment())
+									.setOnInsert("createdAt", comment.getCreatedAt())));
+					bulk.execute();
+				}
+				List<Comment> preview = comments.subList(Math.max(0, comments.size() - commentPreviewSize),
+						comments.size());
+				mongoTemplate.updateFirst(Query.query(Criteria.where("_id").is(tweetId)), new Update().unset("comments")
+						.set("recentComments", preview).set("commentsCount", comments.size()), tweets);
+				moved++;
+			}
+		}
+		if (moved > 0) {
+			logger.info("Moved embedded comments of {} tweets into the comments collection", moved);
+		}
+	}
+
+	/**
+	 * Copies tweets that are missing from the read model into it, server side.
+	 * Tweets written before the tweets topic existed have no events to replay;
+	 * views the projector already wrote are kept as they are.
+	 */
+	void seedTweetView() {
+		String tweets = mongoTemplate.getCollectionName(Tweet.class);
+		String views = mongoTemplate.getCollectionName(TweetView.class);
+		long tweetCount = mongoTemplate.getCollection(tweets).estimatedDocumentCount();
+		if (mongoTemplate.getCollection(views).estimatedDocumentCount() >= tweetCount) {
+			return;
+		}
+		mongoTemplate.getCollection(tweets).aggregate(Arrays.asList(
+				new Document("$match", new Document("deletedAt", new Document("$exists", false))),
+				new Document("$project", new Document("outbox", 0).append("_class", 0)),
+				new Document("$merge", new Document("into", views).append("on", "_id")
+						.append("whenMatched", "keepExisting").append("whenNotMatched", "insert"))))
+				.toCollection();
+		logger.info("Seeded the tweet read model from {} tweets", tweetCount);
+	}
+}
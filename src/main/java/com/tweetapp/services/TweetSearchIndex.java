@@ -0,0 +1,434 @@
+package com.tweetapp.services;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Sort.Direction;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.util.CloseableIterator;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import com.tweetapp.entities.Tweet;
+import com.tweetapp.utils.ScoreCursor;
+import com.tweetapp.utils.TextTokenizer;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * In-memory inverted index over tweetText, ranked with BM25.
+ *
+ * Every indexed text gets the next int document id; each term keeps a posting
+ * list of (document, term frequency) in document order, so adding a tweet
+ * only appends. Editing a tweet tombstones its old document and appends a new
+ * one, deleting only tombstones. Once a quarter of the documents are dead
+ * compaction drops them and renumbers the live ones densely (keeping their
+ * order), so memory follows the live tweets, not every edit ever made.
+ *
+ * Queries match all their terms: the shortest posting list is walked and the
+ * others are probed with galloping search, then the best limit hits below the
+ * cursor are kept in a bounded heap. Cost depends on the rarest term, not on
+ * the number of tweets. Latency is recorded in tweetapp.search.latency with
+ * p50/p99 and the tweetapp.search.p99-target-ms objective.
+ *
+ * The index is built from Mongo when the app starts and kept current by
+ * TweetService and SearchIndexUpdater. Those live updates run during the
+ * build too and win over it: the build skips every tweet indexed or removed
+ * live since it started, since what it read may be older.
+ *
+ * @author Tarun Prajapat
+ */
+@Component
+public class TweetSearchIndex {
+
+	private static final float K1 = 1.2f;
+
+	private static final float B = 0.75f;
+
+	// descending score, then descending tweetId
+	private static final Comparator<Hit> RANKING = Comparator.comparingDouble((Hit hit) -> hit.score)
+			.thenComparing(hit -> hit.tweetId).reversed();
+
+//	Injected MongoTemplate bean
+	@Autowired
+	private MongoTemplate mongoTemplate;
+
+	private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+	// all fields below are guarded by lock
+	private final Map<String, Postings> postings = new HashMap<>();
+
+	private final Map<String, Integer> liveDocs = new HashMap<>();
+
+	private BitSet deleted = new BitSet();
+
+	private String[] tweetIds = new String[1024];
+
+	private int[] textHashes = new int[1024];
+
+	private short[] lengths = new short[1024];
+
+	private int nextDoc;
+
+	private long totalLength;
+
+	private int tombstones;
+
+	// tweets changed live while a build runs, null when none runs
+	private Set<String> touchedDuringBuild;
+
+	private final Timer latency;
+
+	Logger logger = LoggerFactory.getLogger(TweetSearchIndex.class);
+
+	public TweetSearchIndex(MeterRegistry meterRegistry,
+			@Value("${tweetapp.search.p99-target-ms:50}") long p99TargetMs) {
+		this.latency = Timer.builder("tweetapp.search.latency").publishPercentiles(0.5, 0.99)
+				.serviceLevelObjectives(Duration.ofMillis(p99TargetMs)).register(meterRegistry);
+		meterRegistry.gauge("tweetapp.search.documents", liveDocs, Map::size);
+		meterRegistry.gauge("tweetapp.search.terms", postings, Map::size);
+	}
+
+	/**
+	 * Adds a tweet or replaces its indexed text, a no-op when the text is unchanged
+	 */
+	public void index(String tweetId, String text) {
+		List<String> terms = TextTokenizer.tokenize(text);
+		int textHash = String.valueOf(text).hashCode();
+		lock.writeLock().lock();
+		try {
+			if (touchedDuringBuild != null) {
+				touchedDuringBuild.add(tweetId);
+			}
+			addDoc(tweetId, terms, textHash);
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Indexes a tweet read by the build, unless it changed live since the
+	 * build started
+	 */
+	private void indexFromBuild(String tweetId, String text) {
+		List<String> terms = TextTokenizer.tokenize(text);
+		int textHash = String.valueOf(text).hashCode();
+		lock.writeLock().lock();
+		try {
+			if (!touchedDuringBuild.contains(tweetId)) {
+				addDoc(tweetId, terms, textHash);
+			}
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	private void addDoc(String tweetId, List<String> terms, int textHash) {
+		Integer current = liveDocs.get(tweetId);
+		if (current != null && textHashes[current] == textHash) {
+			return;
+		}
+		removeDoc(tweetId);
+		int doc = nextDoc++;
+		if (doc == tweetIds.length) {
+			resize(tweetIds.length * 2);
+		}
+		Map<String, Integer> frequencies = new HashMap<>();
+		terms.forEach(term -> frequencies.merge(term, 1, Integer::sum));
+		frequencies.forEach((term, frequency) -> postings.computeIfAbsent(term, key -> new Postings()).add(doc,
+				frequency));
+		tweetIds[doc] = tweetId;
+		textHashes[doc] = textHash;
+		lengths[doc] = (short) Math.min(terms.size(), Short.MAX_VALUE);
+		totalLength += lengths[doc];
+		liveDocs.put(tweetId, doc);
+	}
+
+	private void resize(int capacity) {
+		tweetIds = Arrays.copyOf(tweetIds, capacity);
+		textHashes = Arrays.copyOf(textHashes, capacity);
+		lengths = Arrays.copyOf(lengths, capacity);
+	}
+
+	public void remove(String tweetId) {
+		lock.writeLock().lock();
+		try {
+			if (touchedDuringBuild != null) {
+				touchedDuringBuild.add(tweetId);
+			}
+			removeDoc(tweetId);
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	private void removeDoc(String tweetId) {
+		Integer doc = liveDocs.remove(tweetId);
+		if (doc != null) {
+			deleted.set(doc);
+			tweetIds[doc] = null;
+			totalLength -= lengths[doc];
+			tombstones++;
+		}
+	}
+
+	/**
+	 * @return up to limit hits ranked below after (all hits when after is
+	 *         null), best first
+	 */
+	public List<Hit> search(String query, ScoreCursor after, int limit) {
+		long start = System.nanoTime();
+		lock.readLock().lock();
+		try {
+			return topHits(new ArrayList<>(new LinkedHashSet<>(TextTokenizer.tokenize(query))), after, limit);
+		} finally {
+			lock.readLock().unlock();
+			latency.record(Duration.ofNanos(System.nanoTime() - start));
+		}
+	}
+
+	private List<Hit> topHits(List<String> terms, ScoreCursor after, int limit) {
+		if (terms.isEmpty() || liveDocs.isEmpty() || limit <= 0) {
+			return Collections.emptyList();
+		}
+		List<Postings> lists = new ArrayList<>(terms.size());
+		for (String term : terms) {
+			Postings list = postings.get(term);
+			if (list == null) {
+				return Collections.emptyList();
+			}
+			lists.add(list);
+		}
+		lists.sort(Comparator.comparingInt(list -> list.size));
+		int documents = liveDocs.size();
+		float averageLength = Math.max(1f, (float) totalLength / documents);
+		float[] idf = new float[lists.size()];
+		for (int i = 0; i < lists.size(); i++) {
+			int df = lists.get(i).size;
+			idf[i] = (float) Math.log(1 + (documents - df + 0.5) / (df + 0.5));
+		}
+		Postings driver = lists.get(0);
+		// worst of the kept hits on top, so it is the one replaced
+		PriorityQueue<Hit> best = new PriorityQueue<>(Math.min(limit, driver.size) + 1, RANKING.reversed());
+		int[] positions = new int[lists.size()];
+		for (int p = 0; p < driver.size; p++) {
+			int doc = driver.docs[p];
+			if (deleted.get(doc)) {
+				continue;
+			}
+			float norm = K1 * (1 - B + B * lengths[doc] / averageLength);
+			float score = idf[0] * bm25(driver.frequencies[p], norm);
+			boolean matched = true;
+			for (int i = 1; i < lists.size() && matched; i++) {
+				Postings list = lists.get(i);
+				positions[i] = list.seek(doc, positions[i]);
+				matched = positions[i] < list.size && list.docs[positions[i]] == doc;
+				if (matched) {
+					score += idf[i] * bm25(list.frequencies[positions[i]], norm);
+				}
+			}
+			// common terms match most documents, only allocate the ones that would be kept
+			if (!matched || (best.size() == limit && score < best.peek().score)) {
+				continue;
+			}
+			Hit hit = new Hit(tweetIds[doc], score);
+			if (after != null && !isBelow(hit, after)) {
+				continue;
+			}
+			best.offer(hit);
+			if (best.size() > limit) {
+				best.poll();
+			}
+		}
+		List<Hit> hits = new ArrayList<>(best);
+		hits.sort(RANKING);
+		return hits;
+	}
+
+	private float bm25(int frequency, float norm) {
+		return frequency * (K1 + 1) / (frequency + norm);
+	}
+
+	private boolean isBelow(Hit hit, ScoreCursor after) {
+		return hit.score < after.getScore()
+				|| (hit.score == after.getScore() && hit.tweetId.compareTo(after.getId()) < 0);
+	}
+
+	/**
+	 * Drops tombstoned documents once they make up a quarter of the index and
+	 * renumbers the live ones from 0, in their current order so posting lists
+	 * stay sorted
+	 */
+	@Scheduled(fixedDelayString = "${tweetapp.search.compaction-interval-ms:60000}")
+	public void compact() {
+		lock.writeLock().lock();
+		try {
+			if (tombstones == 0 || tombstones < liveDocs.size() / 4) {
+				return;
+			}
+			int[] renumbered = new int[nextDoc];
+			int live = 0;
+			for (int doc = 0; doc < nextDoc; doc++) {
+				if (!deleted.get(doc)) {
+					renumbered[doc] = live;
+					tweetIds[live] = tweetIds[doc];
+					textHashes[live] = textHashes[doc];
+					lengths[live] = lengths[doc];
+					liveDocs.put(tweetIds[live], live);
+					live++;
+				}
+			}
+			Iterator<Postings> lists = postings.values().iterator();
+			while (lists.hasNext()) {
+				Postings list = lists.next();
+				list.compact(deleted, renumbered);
+				if (list.size == 0) {
+					lists.remove();
+				}
+			}
+			Arrays.fill(tweetIds, live, nextDoc, null);
+			nextDoc = live;
+			resize(Math.max(1024, Integer.highestOneBit(Math.max(live, 1)) * 2));
+			deleted = new BitSet();
+			logger.info("Compacted search index, dropped {} tombstones", tombstones);
+			tombstones = 0;
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Indexes every stored tweet, in id order so document order follows
+	 * creation order. Runs in the background, searches see a growing index
+	 * until it completes.
+	 */
+	@EventListener(ApplicationReadyEvent.class)
+	public void build() {
+		lock.writeLock().lock();
+		try {
+			touchedDuringBuild = new HashSet<>();
+		} finally {
+			lock.writeLock().unlock();
+		}
+		Thread builder = new Thread(() -> {
+			long start = System.nanoTime();
+			Query query = Query.query(Criteria.where("deletedAt").exists(false))
+					.with(Sort.by(Direction.ASC, "tweetId"));
+			query.fields().include("tweetId").include("tweetText");
+			long indexed = 0;
+			try (CloseableIterator<Tweet> tweets = mongoTemplate.stream(query, Tweet.class)) {
+				while (tweets.hasNext()) {
+					Tweet tweet = tweets.next();
+					indexFromBuild(tweet.getTweetId(), tweet.getTweetText());
+					indexed++;
+				}
+				logger.info("Search index built from {} tweets in {} ms", indexed,
+						Duration.ofNanos(System.nanoTime() - start).toMillis());
+			} catch (RuntimeException e) {
+				logger.error("Search index build stopped after {} tweets", indexed, e);
+			} finally {
+				lock.writeLock().lock();
+				try {
+					touchedDuringBuild = null;
+				} finally {
+					lock.writeLock().unlock();
+				}
+			}
+		}, "search-index-build");
+		builder.setDaemon(true);
+		builder.start();
+	}
+
+	@Getter
+	@AllArgsConstructor
+	public static class Hit {
+
+		private final String tweetId;
+
+		private final float score;
+	}
+
+	/**
+	 * Posting list of one term, parallel arrays in ascending document order
+	 */
+	private static class Postings {
+
+		private int[] docs = new int[4];
+
+		private byte[] frequencies = new byte[4];
+
+		private int size;
+
+		void add(int doc, int frequency) {
+			if (size == docs.length) {
+				docs = Arrays.copyOf(docs, size * 2);
+				frequencies = Arrays.copyOf(frequencies, size * 2);
+			}
+			docs[size] = doc;
+			frequencies[size] = (byte) Math.min(frequency, Byte.MAX_VALUE);
+			size++;
+		}
+
+		/**
+		 * @return first position at or after from whose document is >= doc,
+		 *         found by galloping then binary search
+		 */
+		int seek(int doc, int from) {
+			int step = 1;
+			int low = from;
+			int high = from;
+			while (high < size && docs[high] < doc) {
+				low = high + 1;
+				high += step;
+				step <<= 1;
+			}
+			high = Math.min(high, size);
+			int found = Arrays.binarySearch(docs, low, high, doc);
+			return found >= 0 ? found : -found - 1;
+		}
+
+		/**
+		 * Drops deleted documents and renumbers the others
+		 */
+		void compact(BitSet deleted, int[] renumbered) {
+			int kept = 0;
+			for (int i = 0; i < size; i++) {
+				if (!deleted.get(docs[i])) {
+					docs[kept] = renumbered[docs[i]];
+					frequencies[kept] = frequencies[i];
+					kept++;
+				}
+			}
+			size = kept;
+			if (size < docs.length / 4) {
+				docs = Arrays.copyOf(docs, Math.max(4, size * 2));
+				frequencies = Arrays.copyOf(frequencies, Math.max(4, size * 2));
+			}
+		}
+	}
+}
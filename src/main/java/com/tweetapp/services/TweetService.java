@@ -1,27 +1,78 @@
 package com.tweetapp.services;
 
+import java.io.IOException;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.Optional;
-import java.util.UUID;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Sort.Direction;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
 
 import com.tweetapp.dto.Comment;
+import com.tweetapp.dto.CommentPage;
+import com.tweetapp.dto.Like;
+import com.tweetapp.dto.LikeBatchResponse;
+import com.tweetapp.dto.LikeOperation;
+import com.tweetapp.dto.LikeResponse;
+import com.tweetapp.dto.TrendingResponse;
+import com.tweetapp.dto.TweetBatch;
+import com.tweetapp.dto.TweetPage;
 import com.tweetapp.dto.TweetResponse;
 import com.tweetapp.entities.Tweet;
+import com.tweetapp.entities.TweetView;
+import com.tweetapp.events.CacheInvalidationBus;
+import com.tweetapp.events.OutboxEvent;
+import com.tweetapp.events.TrendingAggregator;
+import com.tweetapp.events.TweetEvent;
+import com.tweetapp.exception.BatchTooLargeException;
+import com.tweetapp.exception.InvalidCursorException;
 import com.tweetapp.exception.InvalidUsernameException;
 import com.tweetapp.exception.TweetNotFoundException;
+import com.tweetapp.repositories.CommentRepository;
+import com.tweetapp.repositories.LikeRepository;
 import com.tweetapp.repositories.TweetRepository;
+import com.tweetapp.repositories.TweetViewRepository;
+import com.tweetapp.utils.NdjsonWriter;
+import com.tweetapp.utils.PageCursor;
+import com.tweetapp.utils.ScoreCursor;
+import com.tweetapp.utils.SortableIdGenerator;
+import com.tweetapp.utils.TextEntities;
 
 import io.micrometer.core.instrument.util.StringUtils;
 
 /**
+ * Writes go to the Tweet collection, feed reads to the TweetView read model
+ * that TweetViewProjector keeps up to date from the tweets topic. Every
+ * write puts its event into the tweet's outbox in the same operation, so
+ * OutboxRelay publishes all events of a tweet in the order they happened.
+ * 
  * @author Tarun Prajapat
  */
 @Service
@@ -30,87 +81,283 @@ public class TweetService {
 //	Injected TweetRepository bean
 	@Autowired
 	private TweetRepository tweetRepository;
-	
+
+//	Injected TweetViewRepository bean, all feed reads go to the read model
+	@Autowired
+	private TweetViewRepository tweetViewRepository;
+
+//	Injected LikeRepository bean
+	@Autowired
+	private LikeRepository likeRepository;
+
+//	Injected CommentRepository bean
+	@Autowired
+	private CommentRepository commentRepository;
+
+//	Injected SortableIdGenerator bean
+	@Autowired
+	private SortableIdGenerator idGenerator;
+
+//	Injected MongoTemplate bean, used for in-place atomic updates
 	@Autowired
-	KafkaTemplate<String, Tweet> kafkaTemplate;
-	private static final String KAFKA_TOPIC = "tweets";
-	
+	private MongoTemplate mongoTemplate;
+
+//	Injected CacheInvalidationBus bean, every mutating path broadcasts the tweetId
+	@Autowired
+	private CacheInvalidationBus invalidationBus;
+
+//	Injected HotTweetCache bean, serves getTweet
+	@Autowired
+	private HotTweetCache hotTweetCache;
+
+//	Injected TweetSearchIndex bean
+	@Autowired
+	private TweetSearchIndex searchIndex;
+
+//	Injected BulkLikeWriter bean, batch likes go through it
+	@Autowired
+	private BulkLikeWriter bulkLikeWriter;
+
+//	Injected LikeBuffer bean, write-behind mode for single likes when enabled
+	@Autowired
+	private LikeBuffer likeBuffer;
+
+//	Injected TrendingAggregator bean
+	@Autowired
+	private TrendingAggregator trendingAggregator;
+
+//	Injected ObjectMapper bean, writes the NDJSON streams
+	@Autowired
+	private ObjectMapper objectMapper;
+
+	// newest first, tweetId breaks ties between tweets created in the same millisecond
+	private static final Sort TIMELINE_ORDER = Sort.by(Direction.DESC, "createdAt")
+			.and(Sort.by(Direction.DESC, "tweetId"));
+
+	@Value("${tweetapp.timeline.default-page-size:20}")
+	private int defaultPageSize;
+
+	@Value("${tweetapp.timeline.max-page-size:100}")
+	private int maxPageSize;
+
+	@Value("${tweetapp.timeline.legacy-cap:200}")
+	private int legacyCap;
+
+	@Value("${tweetapp.batch.max-size:100}")
+	private int maxBatchSize;
+
+	// likeStatus lookup and flush granularity of streamed timelines
+	@Value("${tweetapp.stream.chunk-size:100}")
+	private int streamChunkSize;
+
+	private static final Sort COMMENT_ORDER = Sort.by(Direction.DESC, "createdAt")
+			.and(Sort.by(Direction.DESC, "commentId"));
+
+	@Value("${tweetapp.comments.default-page-size:20}")
+	private int defaultCommentPageSize;
+
+	@Value("${tweetapp.comments.max-page-size:100}")
+	private int maxCommentPageSize;
+
+	@Value("${tweetapp.comments.preview-size:3}")
+	private int commentPreviewSize;
+
 	Logger logger = LoggerFactory.getLogger(TweetService.class);
 	/**
-	 * Find all the available tweets
-	 * 
+	 * Find the latest tweets, capped at tweetapp.timeline.legacy-cap. Kept for
+	 * clients that do not page through getTimeline yet.
+	 *
 	 * @return TweetResponse
 	 */
 	public List<TweetResponse> getAllTweets(String loggedInUser) {
-		List<Tweet> allTweets = tweetRepository.findAll();
-		List<TweetResponse> tweetResponse = allTweets.stream().map(tweet -> {
-			Integer likesCount = tweet.getLikes().size();
-			Boolean likeStatus = tweet.getLikes().contains(loggedInUser);
-			Integer commentsCount = tweet.getComments().size();
-			logger.info("All tweets --> {}",tweet);
-			return new TweetResponse(tweet.getTweetId(), tweet.getUsername(), tweet.getTweetText(),
-					tweet.getFirstName(), tweet.getLastName(), tweet.getTweetDate(), likesCount, commentsCount,
-					likeStatus, tweet.getComments());
-		}).collect(Collectors.toList());
-		return tweetResponse;
-	}
-
-	/**
-	 * Method for searching tweets by a particular user
-	 * 
+		List<TweetView> allTweets = tweetViewRepository.findAllBy(PageRequest.of(0, legacyCap, TIMELINE_ORDER));
+		logger.info("All tweets --> {}", allTweets.size());
+		return toTweetResponses(allTweets, loggedInUser);
+	}
+
+	/**
+	 * Whole timeline as NDJSON, newest first and uncapped. Tweets are read from
+	 * a Mongo cursor and written as soon as their chunk has its likeStatus, so
+	 * heap use and time to first byte do not depend on the timeline size.
+	 *
+	 * @return StreamingResponseBody
+	 */
+	public StreamingResponseBody streamAllTweets(String loggedInUser) {
+		return out -> {
+			try (Stream<TweetView> tweets = tweetViewRepository.streamAllBy(TIMELINE_ORDER);
+					NdjsonWriter writer = new NdjsonWriter(objectMapper, out)) {
+				writeTweets(tweets.iterator(), loggedInUser, writer);
+			}
+		};
+	}
+
+	/**
+	 * Find one page of the global timeline, newest first. With since, only
+	 * tweets created after that instant are returned, which is what a client
+	 * polling for new tweets needs.
+	 *
+	 * @return TweetPage
+	 * @throws InvalidCursorException
+	 */
+	public TweetPage getTimeline(String loggedInUser, String after, Integer limit, Instant since)
+			throws InvalidCursorException {
+		int pageSize = limit == null || limit <= 0 ? defaultPageSize : Math.min(limit, maxPageSize);
+		// one extra row tells us whether another page exists
+		Pageable pageable = PageRequest.of(0, pageSize + 1, TIMELINE_ORDER);
+		List<TweetView> tweets;
+		if (StringUtils.isBlank(after)) {
+			tweets = since == null ? tweetViewRepository.findAllBy(pageable)
+					: tweetViewRepository.findByCreatedAtAfter(since, pageable);
+		} else if (since != null) {
+			PageCursor cursor = PageCursor.decode(after);
+			tweets = tweetViewRepository.findTimelineBetween(since, cursor.getCreatedAt(), cursor.getId(), pageable);
+		} else {
+			PageCursor cursor = PageCursor.decode(after);
+			tweets = tweetViewRepository.findTimelineAfter(cursor.getCreatedAt(), cursor.getId(), pageable);
+		}
+		return toTweetPage(tweets, pageSize, loggedInUser);
+	}
+
+	/**
+	 * Method for searching tweets by a particular user, newest first and capped
+	 * at tweetapp.timeline.legacy-cap
+	 *
 	 * @return TweetResponse
 	 * @throws InvalidUsernameException
 	 */
 	public List<TweetResponse> getUserTweets(String username, String loggedInUser) throws InvalidUsernameException {
 		// use username as login id
 		if (!StringUtils.isBlank(username)) {
-			List<Tweet> tweets = tweetRepository.findByUsername(username);
-			// List<TweetResponse> tweetResponse= new ArrayList<>();
-			List<TweetResponse> tweetResponse = tweets.stream().map(tweet -> {
-				Integer likesCount = tweet.getLikes().size();
-				Boolean likeStatus = tweet.getLikes().contains(loggedInUser);
-				Integer commentsCount = tweet.getComments().size();
-				logger.info( username+" tweets --> {}",tweet);
-				return new TweetResponse(tweet.getTweetId(), username, tweet.getTweetText(), tweet.getFirstName(),
-						tweet.getLastName(), tweet.getTweetDate(), likesCount, commentsCount, likeStatus,
-						tweet.getComments());
-			}).collect(Collectors.toList());
-			return tweetResponse;
+			List<TweetView> tweets = tweetViewRepository.findByUsername(username,
+					PageRequest.of(0, legacyCap, TIMELINE_ORDER));
+			logger.info(username + " tweets --> {}", tweets.size());
+			return toTweetResponses(tweets, loggedInUser);
 		} else {
 			throw new InvalidUsernameException("Username/loginId provided is invalid");
 		}
 
 	}
 
+	/**
+	 * All tweets of a user as NDJSON, newest first and uncapped. The username
+	 * is checked before anything is written.
+	 *
+	 * @return StreamingResponseBody
+	 * @throws InvalidUsernameException
+	 */
+	public StreamingResponseBody streamUserTweets(String username, String loggedInUser)
+			throws InvalidUsernameException {
+		if (StringUtils.isBlank(username)) {
+			throw new InvalidUsernameException("Username/loginId provided is invalid");
+		}
+		return out -> {
+			try (Stream<TweetView> tweets = tweetViewRepository.streamByUsername(username, TIMELINE_ORDER);
+					NdjsonWriter writer = new NdjsonWriter(objectMapper, out)) {
+				writeTweets(tweets.iterator(), loggedInUser, writer);
+			}
+		};
+	}
+
+	/**
+	 * Find one page of a user's tweets, newest first
+	 *
+	 * @return TweetPage
+	 * @throws InvalidUsernameException
+	 * @throws InvalidCursorException
+	 */
+	public TweetPage getUserTimeline(String username, String loggedInUser, String after, Integer limit)
+			throws InvalidUsernameException, InvalidCursorException {
+		if (StringUtils.isBlank(username)) {
+			throw new InvalidUsernameException("Username/loginId provided is invalid");
+		}
+		int pageSize = limit == null || limit <= 0 ? defaultPageSize : Math.min(limit, maxPageSize);
+		Pageable pageable = PageRequest.of(0, pageSize + 1, TIMELINE_ORDER);
+		List<TweetView> tweets;
+		if (StringUtils.isBlank(after)) {
+			tweets = tweetViewRepository.findByUsername(username, pageable);
+		} else {
+			PageCursor cursor = PageCursor.decode(after);
+			tweets = tweetViewRepository.findUserTimelineAfter(username, cursor.getCreatedAt(), cursor.getId(), pageable);
+		}
+		return toTweetPage(tweets, pageSize, loggedInUser);
+	}
+
+	/**
+	 * Full-text search over tweetText, best match first. Pages continue after
+	 * the score and id of the last hit.
+	 *
+	 * @return TweetPage
+	 * @throws InvalidCursorException
+	 */
+	public TweetPage searchTweets(String query, String loggedInUser, String after, Integer limit)
+			throws InvalidCursorException {
+		int pageSize = limit == null || limit <= 0 ? defaultPageSize : Math.min(limit, maxPageSize);
+		ScoreCursor cursor = StringUtils.isBlank(after) ? null : ScoreCursor.decode(after);
+		List<TweetSearchIndex.Hit> hits = searchIndex.search(query, cursor, pageSize + 1);
+		String nextCursor = null;
+		if (hits.size() > pageSize) {
+			hits = hits.subList(0, pageSize);
+			TweetSearchIndex.Hit last = hits.get(pageSize - 1);
+			nextCursor = new ScoreCursor(last.getScore(), last.getTweetId()).encode();
+		}
+		Map<String, TweetView> views = new HashMap<>();
+		List<String> tweetIds = hits.stream().map(TweetSearchIndex.Hit::getTweetId).collect(Collectors.toList());
+		tweetViewRepository.findAllById(tweetIds).forEach(view -> views.put(view.getTweetId(), view));
+		// hit order, leaving out tweets not projected yet
+		List<TweetView> tweets = hits.stream().map(hit -> views.get(hit.getTweetId())).filter(Objects::nonNull)
+				.collect(Collectors.toList());
+		return new TweetPage(toTweetResponses(tweets, loggedInUser), nextCursor);
+	}
+
+	/**
+	 * Trending hashtags and tweets of a window, precomputed by TrendingAggregator
+	 *
+	 * @return TrendingResponse, null for an unknown window
+	 */
+	public TrendingResponse getTrending(String window) {
+		return trendingAggregator.getTrending(window);
+	}
+
 	/**
 	 * Method to post a new Tweet
-	 * 
+	 *
 	 * @return Tweet
 	 */
 	public Tweet postNewTweet(String username, Tweet newTweet) {
-		newTweet.setTweetId(UUID.randomUUID().toString());
-		kafkaTemplate.send(KAFKA_TOPIC, newTweet);
+		newTweet.setTweetId(idGenerator.nextId());
+		// same millisecond as the id, so (createdAt, tweetId) and tweetId sort alike
+		newTweet.setCreatedAt(SortableIdGenerator.timestampOf(newTweet.getTweetId()));
+		if (StringUtils.isBlank(newTweet.getTweetDate())) {
+			newTweet.setTweetDate(newTweet.getCreatedAt().toString());
+		}
+		// counters are maintained by the server, never trust the client copy
+		newTweet.setRecentComments(new ArrayList<>());
+		newTweet.setLikesCount(0);
+		newTweet.setCommentsCount(0);
+		newTweet.setHashtags(TextEntities.hashtags(newTweet.getTweetText()));
+		newTweet.setMentions(TextEntities.mentions(newTweet.getTweetText()));
+		// the event is stored with the tweet in one insert, OutboxRelay publishes it
+		newTweet.setOutbox(new ArrayList<>(Collections.singletonList(
+				new OutboxEvent(idGenerator.nextId(), TweetEvent.tweetCreated(newTweet)))));
 		logger.info("The new tweet --> {}",newTweet);
-		return tweetRepository.insert(newTweet);
+		Tweet inserted = tweetRepository.insert(newTweet);
+		searchIndex.index(inserted.getTweetId(), inserted.getTweetText());
+		return inserted;
 	}
 
 	/**
 	 * Method to get tweet with tweetid
-	 * 
+	 *
 	 * @return TweetResponse
 	 * @throws TweetNotFoundException
 	 */
 	public TweetResponse getTweet(String tweetId, String username) throws TweetNotFoundException {
-		Optional<Tweet> tweetFounded = tweetRepository.findById(tweetId);
-		if (tweetFounded.isPresent()) {
-			Tweet tweet = tweetFounded.get();
-			Integer likesCount = tweet.getLikes().size();
-			Boolean likeStatus = tweet.getLikes().contains(username);
-			Integer commentsCount = tweet.getComments().size();
+		// concurrent reads of a hot tweet share one load, likeStatus stays per request
+		TweetView tweet = StringUtils.isBlank(tweetId) ? null : hotTweetCache.get(tweetId).orElse(null);
+		if (tweet != null) {
+			Boolean likeStatus = likeRepository.existsByTweetIdAndUsername(tweetId, username);
 			logger.info("returned tweet --> {}",tweet);
-			return new TweetResponse(tweet.getTweetId(), tweet.getUsername(), tweet.getTweetText(),
-					tweet.getFirstName(), tweet.getLastName(), tweet.getTweetDate(), likesCount, commentsCount,
-					likeStatus, tweet.getComments());
+			return toTweetResponse(tweet, likeStatus, username);
 		} else {
 			throw new TweetNotFoundException("This tweet does not exist anymore.");
 		}
@@ -118,19 +365,56 @@ public class TweetService {
 	}
 
 	/**
-	 * Method to update an existing tweet
-	 * 
+	 * Fetch many tweets by id in one call, what a client rendering a feed needs
+	 * instead of one getTweet per item. One $in query on the read model, one
+	 * on the Tweet collection for tweets not projected yet, one for likeStatus.
+	 *
+	 * @return TweetBatch in request order
+	 * @throws BatchTooLargeException
+	 */
+	public TweetBatch getTweets(List<String> tweetIds, String loggedInUser) throws BatchTooLargeException {
+		Set<String> ids = new LinkedHashSet<>();
+		tweetIds.stream().filter(tweetId -> !StringUtils.isBlank(tweetId)).forEach(ids::add);
+		if (ids.size() > maxBatchSize) {
+			throw new BatchTooLargeException("At most " + maxBatchSize + " tweets per batch");
+		}
+		Map<String, TweetView> views = new HashMap<>();
+		tweetViewRepository.findAllById(ids).forEach(view -> views.put(view.getTweetId(), view));
+		List<String> unprojected = ids.stream().filter(tweetId -> !views.containsKey(tweetId))
+				.collect(Collectors.toList());
+		if (!unprojected.isEmpty()) {
+			Query query = Query.query(Criteria.where("tweetId").in(unprojected).and("deletedAt").exists(false));
+			query.fields().exclude("outbox");
+			mongoTemplate.find(query, Tweet.class).forEach(tweet -> views.put(tweet.getTweetId(), TweetView.of(tweet)));
+		}
+		List<TweetView> tweets = ids.stream().map(views::get).filter(Objects::nonNull).collect(Collectors.toList());
+		List<String> missing = ids.stream().filter(tweetId -> !views.containsKey(tweetId))
+				.collect(Collectors.toList());
+		return new TweetBatch(toTweetResponses(tweets, loggedInUser), missing);
+	}
+
+	/**
+	 * Method to update an existing tweet. Only tweetText is written so concurrent
+	 * likes and replies are left untouched; the update event goes to the tweet's
+	 * outbox in the same write.
+	 *
 	 * @return Tweet
 	 * @throws TweetNotFoundException
 	 */
 	public Tweet updateTweet(String userId, String tweetId, String updatedTweetText) throws TweetNotFoundException {
-
-		Optional<Tweet> originalTweetOptional = tweetRepository.findById(tweetId);
-		if (originalTweetOptional.isPresent()) {
-			Tweet tweet = originalTweetOptional.get();
-			tweet.setTweetText(updatedTweetText);
+		OutboxEvent event = new OutboxEvent(idGenerator.nextId(),
+				TweetEvent.tweetUpdated(tweetId, userId, updatedTweetText));
+		Tweet tweet = mongoTemplate.findAndModify(byTweetId(tweetId),
+				new Update().set("tweetText", updatedTweetText)
+						.set("hashtags", TextEntities.hashtags(updatedTweetText))
+						.set("mentions", TextEntities.mentions(updatedTweetText)).push("outbox", event),
+				FindAndModifyOptions.options().returnNew(true), Tweet.class);
+		if (tweet != null) {
 			logger.info("Updated tweet --> {}",tweet);
-			return tweetRepository.save(tweet);
+			searchIndex.index(tweetId, tweet.getTweetText());
+			hotTweetCache.evict(tweetId);
+			invalidationBus.publish(CacheInvalidationBus.TWEETS, tweetId);
+			return tweet;
 		} else {
 			logger.error("cannot update tweet since this tweet does not exist anymore.");
 			throw new TweetNotFoundException("This tweet does not exist anymore.");
@@ -139,14 +423,26 @@ public class TweetService {
 	}
 
 	/**
-	 * Method to delete an existing tweet
-	 * 
+	 * Method to delete an existing tweet. The tweet is only marked deleted,
+	 * with the delete event queued behind its other pending events; OutboxRelay
+	 * removes the document once they are all published.
+	 *
 	 * @return boolean
 	 * @throws TweetNotFoundException
 	 */
 	public boolean deleteTweet(String tweetId) throws TweetNotFoundException {
-		if (tweetRepository.existsById(tweetId) && !StringUtils.isBlank(tweetId)) {
-			tweetRepository.deleteById(tweetId);
+		Query query = byTweetId(tweetId);
+		query.fields().include("username");
+		// the relay fills in the author's username when it publishes the event
+		Tweet deleted = StringUtils.isBlank(tweetId) ? null
+				: mongoTemplate.findAndModify(query, new Update().set("deletedAt", Instant.now()).push("outbox",
+						new OutboxEvent(idGenerator.nextId(), TweetEvent.tweetDeleted(tweetId, null))), Tweet.class);
+		if (deleted != null) {
+			likeRepository.deleteByTweetId(tweetId);
+			commentRepository.deleteByTweetId(tweetId);
+			searchIndex.remove(tweetId);
+			hotTweetCache.evict(tweetId);
+			invalidationBus.publish(CacheInvalidationBus.TWEETS, tweetId);
 			return true;
 		} else {
 			logger.error("Cannot delete tweet since this tweet does not exist anymore.");
@@ -155,64 +451,280 @@ public class TweetService {
 	}
 
 	/**
-	 * Method to like an existing tweet
-	 * 
-	 * @retun tweet
+	 * Method to like an existing tweet. The unique (tweetId, username) index on
+	 * likes decides whether this is a new like, and only then is the counter
+	 * incremented.
+	 *
+	 * @retun LikeResponse
 	 * @throws TweetNotFoundException
 	 */
-	public Tweet likeTweet(String username, String tweetId) throws TweetNotFoundException {
-		Optional<Tweet> tweetOptional = tweetRepository.findById(tweetId);
-		if (tweetOptional.isPresent()) {
-			Tweet tweet = tweetOptional.get();
-			tweet.getLikes().add(username);
-			logger.debug("Liked tweet --> {}",tweet);
-			return tweetRepository.save(tweet);
-		} else {
+	public LikeResponse likeTweet(String username, String tweetId) throws TweetNotFoundException {
+		LikeResponse buffered = bufferLike(username, tweetId, true);
+		if (buffered != null) {
+			return buffered;
+		}
+		if (!mongoTemplate.exists(byTweetId(tweetId), Tweet.class)) {
 			logger.error("cannot like tweet since this tweet does not exist anymore.");
 			throw new TweetNotFoundException("This tweet does not exist anymore.");
 		}
+		Tweet liked;
+		try {
+			likeRepository.insert(new Like(tweetId, username));
+			liked = incrementLikes(tweetId, 1, TweetEvent.tweetLiked(tweetId, username, null));
+			if (liked == null) {
+				// tweet was deleted in between, do not leave an orphan like behind
+				likeRepository.deleteByTweetIdAndUsername(tweetId, username);
+				throw new TweetNotFoundException("This tweet does not exist anymore.");
+			}
+			hotTweetCache.updateCounters(tweetId, liked.getLikesCount(), null);
+		} catch (DuplicateKeyException e) {
+			liked = findCounters(tweetId);
+		}
+		logger.debug("{} liked tweet --> {}", username, tweetId);
+		return new LikeResponse(tweetId, username, true, countOf(liked == null ? null : liked.getLikesCount()));
 	}
 
 	/**
 	 * Method to DisLike an existing tweet
-	 * 
-	 * @retun tweet
+	 *
+	 * @retun LikeResponse
 	 * @throws TweetNotFoundException
 	 */
-	public Tweet dislikeTweet(String username, String tweetId) throws TweetNotFoundException {
-		Optional<Tweet> tweetOptional = tweetRepository.findById(tweetId);
-		if (tweetOptional.isPresent()) {
-			Tweet tweet = tweetOptional.get();
-			tweet.getLikes().remove(username);
-			logger.info("Disliked tweets --> {}",tweet);
-			return tweetRepository.save(tweet);
-		} else {
+	public LikeResponse dislikeTweet(String username, String tweetId) throws TweetNotFoundException {
+		LikeResponse buffered = bufferLike(username, tweetId, false);
+		if (buffered != null) {
+			return buffered;
+		}
+		boolean removed = likeRepository.deleteUnclaimed(tweetId, username, Instant.now()) > 0;
+		Tweet disliked = removed ? incrementLikes(tweetId, -1, TweetEvent.tweetUnliked(tweetId, username, null))
+				: findCounters(tweetId);
+		if (disliked == null) {
 			logger.error("cannot dislike tweet since this tweet does not exist anymore.");
 			throw new TweetNotFoundException("This tweet does not exist anymore.");
 		}
+		if (removed) {
+			hotTweetCache.updateCounters(tweetId, disliked.getLikesCount(), null);
+		}
+		logger.info("{} disliked tweet --> {}", username, tweetId);
+		return new LikeResponse(tweetId, username, false, countOf(disliked.getLikesCount()));
+	}
+
+	/**
+	 * Apply a batch of like and unlike operations for one user with bulk
+	 * writes. When a tweet appears more than once the last operation wins.
+	 *
+	 * @return LikeBatchResponse in request order
+	 * @throws BatchTooLargeException
+	 */
+	public LikeBatchResponse likeTweets(String username, List<LikeOperation> operations)
+			throws BatchTooLargeException {
+		Map<String, Boolean> intents = new LinkedHashMap<>();
+		for (LikeOperation operation : operations) {
+			if (!StringUtils.isBlank(operation.getTweetId()) && operation.getLike() != null) {
+				intents.put(operation.getTweetId(), operation.getLike());
+			}
+		}
+		if (intents.size() > maxBatchSize) {
+			throw new BatchTooLargeException("At most " + maxBatchSize + " operations per batch");
+		}
+		List<Like> likes = new ArrayList<>();
+		List<Like> unlikes = new ArrayList<>();
+		intents.forEach((tweetId, like) -> (like ? likes : unlikes).add(new Like(tweetId, username)));
+		Map<String, Integer> counts = bulkLikeWriter.apply(likes, unlikes);
+		List<LikeResponse> responses = new ArrayList<>();
+		List<String> missing = new ArrayList<>();
+		intents.forEach((tweetId, like) -> {
+			if (counts.containsKey(tweetId)) {
+				responses.add(new LikeResponse(tweetId, username, like, counts.get(tweetId)));
+			} else {
+				missing.add(tweetId);
+			}
+		});
+		logger.debug("{} applied {} like operations", username, intents.size());
+		return new LikeBatchResponse(responses, missing);
 	}
 
 	/**
-	 * Method to comment on a tweet
-	 * 
-	 * @return tweet
+	 * Write-behind path of likeTweet and dislikeTweet: one counter read, the
+	 * intent goes to LikeBuffer and the response already reflects it
+	 *
+	 * @return LikeResponse, null when the buffer is disabled or does not take the intent
 	 * @throws TweetNotFoundException
 	 */
-	public Tweet replyTweet(String username, String tweetId, String tweetReply) throws TweetNotFoundException {
-		Optional<Tweet> tweetFounded = tweetRepository.findById(tweetId);
-		if (tweetFounded.isPresent()) {
-			Tweet tweet = tweetFounded.get();
-			Comment comment = new Comment(username, tweetReply);
-			List<Comment> addList = new ArrayList<Comment>();
-			addList.add(comment);
-			tweet.getComments().add(comment);
-			kafkaTemplate.send(KAFKA_TOPIC, tweet); // KAFKA SENDING EVENTS TO TOPIC
-			logger.info("Commented on tweet --> {}",tweet);
-			return tweetRepository.save(tweet);
-		} else {
+	private LikeResponse bufferLike(String username, String tweetId, boolean like) throws TweetNotFoundException {
+		if (!likeBuffer.isEnabled()) {
+			return null;
+		}
+		Tweet counters = findCounters(tweetId);
+		if (counters == null) {
+			throw new TweetNotFoundException("This tweet does not exist anymore.");
+		}
+		if (!likeBuffer.record(tweetId, username, like)) {
+			return null;
+		}
+		int likesCount = countOf(counters.getLikesCount()) + likeBuffer.pendingDelta(tweetId);
+		return new LikeResponse(tweetId, username, like, Math.max(0, likesCount));
+	}
+
+	/**
+	 * Method to comment on a tweet. The comment goes to the comments collection;
+	 * the tweet only gets its counter bumped and the preview trimmed to
+	 * tweetapp.comments.preview-size, in the same update.
+	 *
+	 * @return Comment
+	 * @throws TweetNotFoundException
+	 */
+	public Comment replyTweet(String username, String tweetId, String tweetReply) throws TweetNotFoundException {
+		if (!mongoTemplate.exists(byTweetId(tweetId), Tweet.class)) {
 			logger.error("cannot comment on tweet since this tweet does not exist anymore.");
 			throw new TweetNotFoundException("This tweet does not exist anymore.");
 		}
+		Comment comment = commentRepository
+				.insert(new Comment(tweetId, username, tweetReply, Instant.now().truncatedTo(ChronoUnit.MILLIS)));
+		Query query = byTweetId(tweetId);
+		query.fields().include("commentsCount");
+		Update update = new Update().inc("commentsCount", 1).push("outbox",
+				new OutboxEvent(idGenerator.nextId(), TweetEvent.commentAdded(comment, null)));
+		update.push("recentComments").slice(-commentPreviewSize).each(comment);
+		Tweet commented = mongoTemplate.findAndModify(query, update, FindAndModifyOptions.options().returnNew(true),
+				Tweet.class);
+		if (commented == null) {
+			// tweet was deleted in between, do not leave an orphan comment behind
+			commentRepository.delete(comment);
+			throw new TweetNotFoundException("This tweet does not exist anymore.");
+		}
+		logger.info("Commented on tweet {} --> {}", tweetId, comment);
+		hotTweetCache.updateCounters(tweetId, null, commented.getCommentsCount());
+		return comment;
+	}
+
+	/**
+	 * Method to page through the comments of a tweet, newest first
+	 *
+	 * @return CommentPage
+	 * @throws InvalidCursorException
+	 * @throws TweetNotFoundException
+	 */
+	public CommentPage getComments(String tweetId, String after, Integer limit)
+			throws InvalidCursorException, TweetNotFoundException {
+		int pageSize = limit == null || limit <= 0 ? defaultCommentPageSize : Math.min(limit, maxCommentPageSize);
+		Pageable pageable = PageRequest.of(0, pageSize + 1, COMMENT_ORDER);
+		List<Comment> comments;
+		if (StringUtils.isBlank(after)) {
+			comments = commentRepository.findByTweetId(tweetId, pageable);
+			if (comments.isEmpty() && !mongoTemplate.exists(byTweetId(tweetId), Tweet.class)) {
+				throw new TweetNotFoundException("This tweet does not exist anymore.");
+			}
+		} else {
+			PageCursor cursor = PageCursor.decode(after);
+			comments = commentRepository.findPageAfter(tweetId, cursor.getCreatedAt(), cursor.getId(), pageable);
+		}
+		String nextCursor = null;
+		if (comments.size() > pageSize) {
+			comments = comments.subList(0, pageSize);
+			Comment last = comments.get(pageSize - 1);
+			nextCursor = new PageCursor(last.getCreatedAt(), last.getCommentId()).encode();
+		}
+		return new CommentPage(comments, nextCursor);
+	}
+
+	/**
+	 * Trims the extra row fetched past pageSize and turns it into the cursor
+	 */
+	private TweetPage toTweetPage(List<TweetView> tweets, int pageSize, String loggedInUser) {
+		String nextCursor = null;
+		if (tweets.size() > pageSize) {
+			tweets = tweets.subList(0, pageSize);
+			TweetView last = tweets.get(pageSize - 1);
+			nextCursor = new PageCursor(last.getCreatedAt(), last.getTweetId()).encode();
+		}
+		return new TweetPage(toTweetResponses(tweets, loggedInUser), nextCursor);
+	}
+
+	/**
+	 * Writes tweets in chunks of tweetapp.stream.chunk-size: one likeStatus
+	 * query and one flush per chunk. A client that goes away fails the next
+	 * write, which closes the cursor.
+	 */
+	private void writeTweets(Iterator<TweetView> tweets, String loggedInUser, NdjsonWriter writer)
+			throws IOException {
+		List<TweetView> chunk = new ArrayList<>(streamChunkSize);
+		while (tweets.hasNext()) {
+			chunk.add(tweets.next());
+			if (chunk.size() == streamChunkSize || !tweets.hasNext()) {
+				for (TweetResponse tweet : toTweetResponses(chunk, loggedInUser)) {
+					writer.write(tweet);
+				}
+				writer.flush();
+				chunk.clear();
+			}
+		}
+	}
+
+	/**
+	 * Builds feed items from the read model, only likeStatus is per user. It
+	 * comes from one query for the whole page.
+	 */
+	private List<TweetResponse> toTweetResponses(List<TweetView> tweets, String loggedInUser) {
+		Set<String> likedTweetIds = findLikedTweetIds(loggedInUser, tweets);
+		return tweets.stream()
+				.map(tweet -> toTweetResponse(tweet, likedTweetIds.contains(tweet.getTweetId()), loggedInUser))
+				.collect(Collectors.toList());
+	}
+
+	/**
+	 * likeStatus and likesCount overlay the like intents LikeBuffer has not
+	 * written yet, so users see their own like right away. Also used by the
+	 * reactive read endpoints, so both stacks return the same items.
+	 */
+	public TweetResponse toTweetResponse(TweetView tweet, Boolean likeStatus, String loggedInUser) {
+		Boolean pendingLike = likeBuffer.pendingIntent(tweet.getTweetId(), loggedInUser);
+		int likesCount = Math.max(0, countOf(tweet.getLikesCount()) + likeBuffer.pendingDelta(tweet.getTweetId()));
+		return new TweetResponse(tweet.getTweetId(), tweet.getUsername(), tweet.getTweetText(), tweet.getFirstName(),
+				tweet.getLastName(), tweet.getTweetDate(), likesCount, countOf(tweet.getCommentsCount()),
+				pendingLike != null ? pendingLike : likeStatus, tweet.getRecentComments());
+	}
+
+	/**
+	 * @return ids of the given tweets that loggedInUser has liked
+	 */
+	private Set<String> findLikedTweetIds(String loggedInUser, List<TweetView> tweets) {
+		if (StringUtils.isBlank(loggedInUser) || tweets.isEmpty()) {
+			return Collections.emptySet();
+		}
+		List<String> tweetIds = tweets.stream().map(TweetView::getTweetId).collect(Collectors.toList());
+		return likeRepository.findByUsernameAndTweetIdIn(loggedInUser, tweetIds).stream().map(Like::getTweetId)
+				.collect(Collectors.toSet());
+	}
+
+	/**
+	 * Changes likesCount and queues event in the same write
+	 *
+	 * @return tweet with only likesCount populated after the increment, null when it is gone
+	 */
+	private Tweet incrementLikes(String tweetId, int delta, TweetEvent event) {
+		Query query = byTweetId(tweetId);
+		query.fields().include("likesCount");
+		return mongoTemplate.findAndModify(query,
+				new Update().inc("likesCount", delta).push("outbox", new OutboxEvent(idGenerator.nextId(), event)),
+				FindAndModifyOptions.options().returnNew(true), Tweet.class);
+	}
+
+	private Tweet findCounters(String tweetId) {
+		Query query = byTweetId(tweetId);
+		query.fields().include("likesCount").include("commentsCount");
+		return mongoTemplate.findOne(query, Tweet.class);
+	}
+
+	/**
+	 * @return query for the tweet unless it is deleted
+	 */
+	private Query byTweetId(String tweetId) {
+		return Query.query(Criteria.where("tweetId").is(tweetId).and("deletedAt").exists(false));
+	}
+
+	private Integer countOf(Integer counter) {
+		return counter == null ? 0 : counter;
 	}
 
 }
@@ -1,16 +1,34 @@
 package com.tweetapp.services;
 
+import java.util.Iterator;
 import java.util.List;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Sort.Direction;
 import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import com.tweetapp.dto.UserPage;
+import com.tweetapp.dto.UserSummary;
 import com.tweetapp.entities.UserModel;
+import com.tweetapp.events.CacheInvalidationBus;
+import com.tweetapp.exception.InvalidCursorException;
 import com.tweetapp.exception.UsernameAlreadyExists;
 import com.tweetapp.repositories.UserRepository;
+import com.tweetapp.utils.KeyCursor;
+import com.tweetapp.utils.NdjsonWriter;
+
+import io.micrometer.core.instrument.util.StringUtils;
 
 /**
  * @author Tarun Prajapat
@@ -22,6 +40,42 @@ public class UserModelService {
 	@Autowired
 	private UserRepository userRepository;
 	
+//	Injected CachedUserLookup bean, serves profile and login lookups
+	@Autowired
+	private CachedUserLookup cachedUserLookup;
+
+//	Injected CacheInvalidationBus bean, tells other instances about user writes
+	@Autowired
+	private CacheInvalidationBus invalidationBus;
+
+//	Injected UserSearchIndex bean
+	@Autowired
+	private UserSearchIndex userSearchIndex;
+
+//	Injected ObjectMapper bean, writes the NDJSON export
+	@Autowired
+	private ObjectMapper objectMapper;
+
+	private static final Sort BY_USERNAME = Sort.by(Direction.ASC, "username");
+
+	@Value("${tweetapp.users.directory.legacy-cap:200}")
+	private int legacyDirectoryCap;
+
+	@Value("${tweetapp.users.directory.default-page-size:50}")
+	private int defaultDirectoryPageSize;
+
+	@Value("${tweetapp.users.directory.max-page-size:200}")
+	private int maxDirectoryPageSize;
+
+	@Value("${tweetapp.stream.chunk-size:100}")
+	private int streamChunkSize;
+
+	@Value("${tweetapp.users.search.default-page-size:10}")
+	private int defaultSearchPageSize;
+
+	@Value("${tweetapp.users.search.max-page-size:50}")
+	private int maxSearchPageSize;
+
 	Logger logger = LoggerFactory.getLogger(UserModelService.class);
 
 	/**
@@ -30,7 +84,7 @@ public class UserModelService {
 	 * @return UserModel
 	 */
 	public UserModel findByUsername(String username) {
-		UserModel userModel = userRepository.findByUsername(username);
+		UserModel userModel = cachedUserLookup.findUser(username);
 		UserModel newUserModel = new UserModel(userModel.getUsername(), userModel.getFirstName(),
 				userModel.getLastName(), userModel.getEmail(), userModel.getPassword(), userModel.getContactNum());
 		return newUserModel;
@@ -42,26 +96,76 @@ public class UserModelService {
 	 * @return UserModel
 	 */
 	public UserModel createUser(UserModel user) throws UsernameAlreadyExists {
-		UserModel foundedUser = userRepository.findByUsername(user.getUsername());
-		if (foundedUser != null) {
+		if (userRepository.existsById(user.getUsername())) {
 			logger.error("Username is not available");
 			throw new UsernameAlreadyExists("username already exists");
 		}
-		return userRepository.save(user);
+		UserModel created = userRepository.save(user);
+		// misses are not cached, evicting keeps every user write invalidating
+		cachedUserLookup.evict(created.getUsername());
+		invalidationBus.publish(CacheInvalidationBus.USERS, created.getUsername());
+		userSearchIndex.add(created);
+		return created;
 	}
 
 	/**
-	 * Method to get all users
+	 * Method to get all users, the first tweetapp.users.directory.legacy-cap in
+	 * username order. Kept for clients that do not page through getDirectory yet.
 	 * 
-	 * @return List<UserModel>
+	 * @return List<UserSummary>
 	 */
-	public List<UserModel> getAllUsers() {
-		List<UserModel> userModels = (List<UserModel>) userRepository.findAll();
-		List<UserModel> newUserModel = userModels.stream().map(user -> {
-			return new UserModel(user.getUsername(), user.getFirstName(), user.getLastName(), user.getEmail(), "null",
-					"null");
-		}).collect(Collectors.toList());
-		return newUserModel;
+	public List<UserSummary> getAllUsers() {
+		Pageable pageable = PageRequest.of(0, legacyDirectoryCap, BY_USERNAME);
+		return userRepository.findAllBy(pageable).stream().map(this::toSummary).collect(Collectors.toList());
+	}
+
+	/**
+	 * Every user as NDJSON in username order, uncapped. Users are written as
+	 * they come off the projected cursor, one flush per
+	 * tweetapp.stream.chunk-size users.
+	 * 
+	 * @return StreamingResponseBody
+	 */
+	public StreamingResponseBody streamAllUsers() {
+		return out -> {
+			try (Stream<UserModel> users = userRepository.streamAllBy(BY_USERNAME);
+					NdjsonWriter writer = new NdjsonWriter(objectMapper, out)) {
+				int written = 0;
+				Iterator<UserModel> iterator = users.iterator();
+				while (iterator.hasNext()) {
+					writer.write(toSummary(iterator.next()));
+					if (++written % streamChunkSize == 0) {
+						writer.flush();
+					}
+				}
+			}
+		};
+	}
+
+	/**
+	 * One page of the user directory in username order, a projected query
+	 * limited to the page
+	 * 
+	 * @return UserPage
+	 * @throws InvalidCursorException
+	 */
+	public UserPage getDirectory(String after, Integer limit) throws InvalidCursorException {
+		int pageSize = limit == null || limit <= 0 ? defaultDirectoryPageSize : Math.min(limit, maxDirectoryPageSize);
+		// one extra row tells us whether another page exists
+		Pageable pageable = PageRequest.of(0, pageSize + 1, BY_USERNAME);
+		List<UserModel> users = StringUtils.isBlank(after) ? userRepository.findAllBy(pageable)
+				: userRepository.findByUsernameAfter(KeyCursor.decode(after), pageable);
+		List<UserSummary> page = users.stream().map(this::toSummary).collect(Collectors.toList());
+		String nextCursor = null;
+		if (page.size() > pageSize) {
+			page = page.subList(0, pageSize);
+			nextCursor = KeyCursor.encode(page.get(pageSize - 1).getUsername());
+		}
+		return new UserPage(page, nextCursor);
+	}
+
+	private UserSummary toSummary(UserModel user) {
+		return new UserSummary(user.getUsername(), user.getFirstName(), user.getLastName());
 	}
 
 	/**
@@ -70,21 +174,45 @@ public class UserModelService {
 	 * @return userModel
 	 */
 	public UserModel changePassword(String username, String newPassword, String contact) throws Exception {
-		UserModel userDetails = userRepository.findByUsername(username);
+		UserModel userDetails = userRepository.findById(username).orElse(null);
 		if (userDetails.getContactNum().equalsIgnoreCase(contact)
 				&& userDetails.getUsername().equalsIgnoreCase(username)) {
 			userDetails.setPassword(newPassword);
 			logger.info("Password Updated for --> {}",userDetails);
-			return userRepository.save(userDetails);
+			UserModel saved = userRepository.save(userDetails);
+			cachedUserLookup.evict(username);
+			invalidationBus.publish(CacheInvalidationBus.USERS, username);
+			return saved;
 		} else {
 			logger.error("cannot change password");
 			throw new Exception("Unable to change password");
 		}
 	}
 	
-	// Method to search for like users by username
-	public List<UserModel> getUsersByUsername(String username) {
-		return userRepository.findAll();
+	/**
+	 * Typeahead search over username, first and last name, only the first
+	 * page of matches and no private fields
+	 * 
+	 * @return List<UserSummary>
+	 */
+	public List<UserSummary> getUsersByUsername(String username) {
+		try {
+			return userSearchIndex.search(username, null, defaultSearchPageSize).getUsers();
+		} catch (InvalidCursorException e) {
+			// no cursor was passed
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Paged typeahead search over username, first and last name
+	 * 
+	 * @return UserPage
+	 * @throws InvalidCursorException
+	 */
+	public UserPage searchUsers(String query, String after, Integer limit) throws InvalidCursorException {
+		int pageSize = limit == null || limit <= 0 ? defaultSearchPageSize : Math.min(limit, maxSearchPageSize);
+		return userSearchIndex.search(query, after, pageSize);
 	}
 
 }
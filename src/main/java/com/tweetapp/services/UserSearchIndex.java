@@ -0,0 +1,212 @@
+package com.tweetapp.services;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.util.CloseableIterator;
+import org.springframework.stereotype.Component;
+
+import com.tweetapp.dto.UserPage;
+import com.tweetapp.dto.UserSummary;
+import com.tweetapp.entities.UserModel;
+import com.tweetapp.events.CacheInvalidationBus;
+import com.tweetapp.exception.InvalidCursorException;
+import com.tweetapp.utils.KeyCursor;
+
+/**
+ * Typeahead index of users. Two sorted maps hold one key per lower case
+ * username and per first/last name word, suffixed with the username, so all
+ * users matching a prefix are one contiguous range of each map.
+ *
+ * A search merges the two ranges in key order and returns each user once,
+ * at the first of their keys matching the prefix, so users rank by their
+ * alphabetically first matching username or name word. The other keys of a
+ * user are read and skipped; a page reads at most (limit + 1) *
+ * KEYS_PER_RESULT keys whatever the number of users, and comes back short,
+ * with a cursor to go on, when it runs out of them first. The cursor is the
+ * last key read.
+ *
+ * Loaded at startup, updated by createUser and, for users written on other
+ * instances, by CacheInvalidationBus.
+ *
+ * @author Tarun Prajapat
+ */
+@Component
+public class UserSearchIndex {
+
+	private static final char SEPARATOR = '\u0000';
+
+	private static final char USERNAME_RANGE = 'u';
+
+	private static final char NAME_RANGE = 'n';
+
+	private static final int KEYS_PER_RESULT = 4;
+
+//	Injected MongoTemplate bean
+	@Autowired
+	private MongoTemplate mongoTemplate;
+
+	// lower case username + SEPARATOR + username
+	private final ConcurrentSkipListMap<String, UserSummary> byUsername = new ConcurrentSkipListMap<>();
+
+	// lower case name word + SEPARATOR + username
+	private final ConcurrentSkipListMap<String, UserSummary> byName = new ConcurrentSkipListMap<>();
+
+	private final Map<String, UserSummary> users = new ConcurrentHashMap<>();
+
+	Logger logger = LoggerFactory.getLogger(UserSearchIndex.class);
+
+	/**
+	 * Users created or changed on other instances are re-read from Mongo
+	 */
+	public UserSearchIndex(CacheInvalidationBus invalidationBus) {
+		invalidationBus.onInvalidate(CacheInvalidationBus.USERS, this::reload);
+	}
+
+	private void reload(String username) {
+		Query query = Query.query(Criteria.where("username").is(username));
+		query.fields().include("username").include("firstName").include("lastName");
+		UserModel user = mongoTemplate.findOne(query, UserModel.class);
+		if (user != null) {
+			add(user);
+		}
+	}
+
+	/**
+	 * Adds a user, or replaces the entries of an existing one
+	 */
+	public synchronized void add(UserModel user) {
+		UserSummary summary = new UserSummary(user.getUsername(), user.getFirstName(), user.getLastName());
+		UserSummary previous = users.put(user.getUsername(), summary);
+		if (previous != null) {
+			byUsername.remove(usernameKey(previous));
+			nameKeys(previous).forEach(byName::remove);
+		}
+		byUsername.put(usernameKey(summary), summary);
+		nameKeys(summary).forEach(key -> byName.put(key, summary));
+	}
+
+	/**
+	 * @return page of users whose username or a name word starts with prefix
+	 * @throws InvalidCursorException
+	 */
+	public UserPage search(String prefix, String after, int limit) throws InvalidCursorException {
+		String normalized = prefix == null ? "" : prefix.trim().toLowerCase(Locale.ROOT);
+		if (normalized.isEmpty() || limit <= 0) {
+			return new UserPage(Collections.emptyList(), null);
+		}
+		String from = normalized;
+		boolean usernamesInclusive = true;
+		boolean namesInclusive = true;
+		if (after != null) {
+			String cursor = KeyCursor.decode(after);
+			char range = cursor.charAt(0);
+			from = cursor.substring(1);
+			if ((range != USERNAME_RANGE && range != NAME_RANGE) || !from.startsWith(normalized)) {
+				throw new InvalidCursorException("Cursor does not belong to this search");
+			}
+			// on equal keys the username one is read first
+			usernamesInclusive = false;
+			namesInclusive = range == USERNAME_RANGE;
+		}
+		String to = normalized + Character.MAX_VALUE;
+		Iterator<Map.Entry<String, UserSummary>> usernames = byUsername
+				.subMap(from, usernamesInclusive, to, false).entrySet().iterator();
+		Iterator<Map.Entry<String, UserSummary>> names = byName.subMap(from, namesInclusive, to, false).entrySet()
+				.iterator();
+		Map.Entry<String, UserSummary> nextUsername = next(usernames);
+		Map.Entry<String, UserSummary> nextName = next(names);
+		List<UserSummary> page = new ArrayList<>(limit);
+		String lastKey = null;
+		boolean more = false;
+		for (int budget = (limit + 1) * KEYS_PER_RESULT; nextUsername != null || nextName != null; budget--) {
+			boolean fromUsernames = nextName == null
+					|| (nextUsername != null && nextUsername.getKey().compareTo(nextName.getKey()) <= 0);
+			Map.Entry<String, UserSummary> entry = fromUsernames ? nextUsername : nextName;
+			char range = fromUsernames ? USERNAME_RANGE : NAME_RANGE;
+			boolean first = isFirstMatch(entry.getValue(), range, entry.getKey(), normalized);
+			if ((first && page.size() == limit) || budget == 0) {
+				more = true;
+				break;
+			}
+			if (first) {
+				page.add(entry.getValue());
+			}
+			lastKey = range + entry.getKey();
+			if (fromUsernames) {
+				nextUsername = next(usernames);
+			} else {
+				nextName = next(names);
+			}
+		}
+		return new UserPage(page, more ? KeyCursor.encode(lastKey) : null);
+	}
+
+	private Map.Entry<String, UserSummary> next(Iterator<Map.Entry<String, UserSummary>> entries) {
+		return entries.hasNext() ? entries.next() : null;
+	}
+
+	/**
+	 * A user shows up once, under the first of their keys matching prefix
+	 */
+	private boolean isFirstMatch(UserSummary user, char range, String key, String prefix) {
+		String first = null;
+		char firstRange = USERNAME_RANGE;
+		if (user.getUsername().toLowerCase(Locale.ROOT).startsWith(prefix)) {
+			first = usernameKey(user);
+		}
+		for (String nameKey : nameKeys(user)) {
+			if (nameKey.startsWith(prefix) && (first == null || nameKey.compareTo(first) < 0)) {
+				first = nameKey;
+				firstRange = NAME_RANGE;
+			}
+		}
+		return range == firstRange && key.equals(first);
+	}
+
+	/**
+	 * Loads every user, only the public fields are read
+	 */
+	@EventListener(ApplicationReadyEvent.class)
+	public void build() {
+		Query query = new Query();
+		query.fields().include("username").include("firstName").include("lastName");
+		long loaded = 0;
+		try (CloseableIterator<UserModel> cursor = mongoTemplate.stream(query, UserModel.class)) {
+			while (cursor.hasNext()) {
+				add(cursor.next());
+				loaded++;
+			}
+		}
+		logger.info("User search index loaded {} users", loaded);
+	}
+
+	private String usernameKey(UserSummary user) {
+		return user.getUsername().toLowerCase(Locale.ROOT) + SEPARATOR + user.getUsername();
+	}
+
+	private List<String> nameKeys(UserSummary user) {
+		return Stream.of(user.getFirstName(), user.getLastName()).filter(Objects::nonNull)
+				.flatMap(name -> Arrays.stream(name.toLowerCase(Locale.ROOT).split("[\\s\\p{Punct}]+")))
+				.filter(word -> !word.isEmpty()).distinct().map(word -> word + SEPARATOR + user.getUsername())
+				.collect(Collectors.toList());
+	}
+}
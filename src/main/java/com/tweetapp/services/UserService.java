@@ -10,7 +10,6 @@ import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
 
 import com.tweetapp.entities.UserModel;
-import com.tweetapp.repositories.UserRepository;
 
 /**
  * @author Tarun Prajapat
@@ -18,16 +17,16 @@ import com.tweetapp.repositories.UserRepository;
 @Service
 public class UserService implements UserDetailsService {
 
-//	Injeted userRepository bean
+//	Injected CachedUserLookup bean
 	@Autowired
-	private UserRepository userRepository;
+	private CachedUserLookup cachedUserLookup;
 
 	/**
 	 * Used for validation
 	 */
 	@Override
 	public UserDetails loadUserByUsername(String username) throws UsernameNotFoundException {
-		UserModel foundedUser = userRepository.findByUsername(username);
+		UserModel foundedUser = cachedUserLookup.findUser(username);
 		if (foundedUser == null)
 			return null;
 		String name = foundedUser.getUsername();
@@ -0,0 +1,145 @@
+package com.tweetapp.utils;
+
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+
+/**
+ * Fixed size frequency sketch. Estimates never undercount and overcount by
+ * at most total / width with high probability (one row per hash function,
+ * depth rows). Memory is depth * width ints whatever the number of keys.
+ *
+ * Each row hashes the key's chars with its own murmur3 seed, so rows are
+ * independent: keys that collide in one row (or share a String.hashCode)
+ * almost never collide in the others. Seeds are fixed, so sketches of
+ * different instances and runs line up.
+ *
+ * Sketches of the same shape can be added and subtracted, which is how a
+ * sliding window adds a new time bucket and drops an expired one.
+ *
+ * @author Tarun Prajapat
+ */
+public class CountMinSketch {
+
+	/**
+	 * Version of the row hashing, checkpoints made with another one cannot be
+	 * loaded
+	 */
+	public static final int HASHING = 2;
+
+	private final int depth;
+
+	private final int width;
+
+	private final int[] counts;
+
+	private final int[] seeds;
+
+	public CountMinSketch(int depth, int width) {
+		if (depth <= 0 || width <= 0) {
+			throw new IllegalArgumentException("depth and width must be positive");
+		}
+		this.depth = depth;
+		this.width = width;
+		this.counts = new int[depth * width];
+		this.seeds = new int[depth];
+		for (int row = 0; row < depth; row++) {
+			seeds[row] = fmix(0x9E3779B9 * (row + 1));
+		}
+	}
+
+	public void add(String key, int count) {
+		for (int row = 0; row < depth; row++) {
+			counts[row * width + index(key, row)] += count;
+		}
+	}
+
+	/**
+	 * @return upper bound of the number of times key was added
+	 */
+	public int estimate(String key) {
+		int min = Integer.MAX_VALUE;
+		for (int row = 0; row < depth; row++) {
+			min = Math.min(min, counts[row * width + index(key, row)]);
+		}
+		return min;
+	}
+
+	public void add(CountMinSketch other) {
+		checkShape(other);
+		for (int i = 0; i < counts.length; i++) {
+			counts[i] += other.counts[i];
+		}
+	}
+
+	public void subtract(CountMinSketch other) {
+		checkShape(other);
+		for (int i = 0; i < counts.length; i++) {
+			counts[i] -= other.counts[i];
+		}
+	}
+
+	public void clear() {
+		Arrays.fill(counts, 0);
+	}
+
+	/**
+	 * @return counters as bytes, for checkpoints
+	 */
+	public byte[] toBytes() {
+		ByteBuffer buffer = ByteBuffer.allocate(counts.length * Integer.BYTES);
+		buffer.asIntBuffer().put(counts);
+		return buffer.array();
+	}
+
+	/**
+	 * Replaces the counters with ones written by toBytes of a sketch of the
+	 * same shape
+	 */
+	public void load(byte[] bytes) {
+		if (bytes.length != counts.length * Integer.BYTES) {
+			throw new IllegalArgumentException("Sketch checkpoint does not match depth " + depth + " width " + width);
+		}
+		IntBuffer buffer = ByteBuffer.wrap(bytes).asIntBuffer();
+		buffer.get(counts);
+	}
+
+	private int index(String key, int row) {
+		return (murmur3(key, seeds[row]) & 0x7fffffff) % width;
+	}
+
+	/**
+	 * MurmurHash3 x86 32 bit of the key's UTF-16 chars, two chars per block
+	 */
+	static int murmur3(String key, int seed) {
+		int h = seed;
+		int length = key.length();
+		for (int i = 1; i < length; i += 2) {
+			h ^= mixK(key.charAt(i - 1) | (key.charAt(i) << 16));
+			h = Integer.rotateLeft(h, 13) * 5 + 0xE6546B64;
+		}
+		if ((length & 1) == 1) {
+			h ^= mixK(key.charAt(length - 1));
+		}
+		return fmix(h ^ (Character.BYTES * length));
+	}
+
+	private static int mixK(int k) {
+		return Integer.rotateLeft(k * 0xCC9E2D51, 15) * 0x1B873593;
+	}
+
+	private static int fmix(int h) {
+		h ^= h >>> 16;
+		h *= 0x85EBCA6B;
+		h ^= h >>> 13;
+		h *= 0xC2B2AE35;
+		h ^= h >>> 16;
+		return h;
+	}
+
+	private void checkShape(CountMinSketch other) {
+		if (other.depth != depth || other.width != width) {
+			throw new IllegalArgumentException("Sketches differ in shape");
+		}
+	}
+}
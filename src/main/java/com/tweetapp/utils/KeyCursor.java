@@ -0,0 +1,41 @@
+package com.tweetapp.utils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+import com.tweetapp.exception.InvalidCursorException;
+
+/**
+ * Opaque cursor over a key ordered listing: the key of the last item
+ * returned, the next page starts strictly after it.
+ * 
+ * @author Tarun Prajapat
+ */
+public final class KeyCursor {
+
+	private KeyCursor() {
+	}
+
+	/**
+	 * @return url safe string handed to the client
+	 */
+	public static String encode(String key) {
+		return Base64.getUrlEncoder().withoutPadding().encodeToString(key.getBytes(StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * @return key decoded from the value sent back by the client
+	 * @throws InvalidCursorException
+	 */
+	public static String decode(String cursor) throws InvalidCursorException {
+		try {
+			String key = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+			if (key.isEmpty()) {
+				throw new InvalidCursorException("Cursor is malformed");
+			}
+			return key;
+		} catch (IllegalArgumentException e) {
+			throw new InvalidCursorException("Cursor is malformed");
+		}
+	}
+}
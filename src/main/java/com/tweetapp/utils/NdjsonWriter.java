@@ -0,0 +1,53 @@
+package com.tweetapp.utils;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+/**
+ * Writes one JSON document per line (application/x-ndjson) through a single
+ * generator, so memory stays flat however many items are written. Closing it
+ * flushes but leaves the underlying stream to its owner.
+ *
+ * @author Tarun Prajapat
+ */
+public class NdjsonWriter implements Closeable {
+
+	private final ObjectWriter objectWriter;
+
+	private final JsonGenerator generator;
+
+	public NdjsonWriter(ObjectMapper objectMapper, OutputStream out) throws IOException {
+		// flushing is left to the caller, once per batch of lines
+		this.objectWriter = objectMapper.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+		this.generator = objectMapper.getFactory().createGenerator(out);
+		this.generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+		// lines are terminated explicitly, no space between root values
+		this.generator.setRootValueSeparator(null);
+	}
+
+	/**
+	 * Appends item as one line
+	 */
+	public void write(Object item) throws IOException {
+		objectWriter.writeValue(generator, item);
+		generator.writeRaw('\n');
+	}
+
+	/**
+	 * Pushes buffered lines to the client
+	 */
+	public void flush() throws IOException {
+		generator.flush();
+	}
+
+	@Override
+	public void close() throws IOException {
+		generator.close();
+	}
+}
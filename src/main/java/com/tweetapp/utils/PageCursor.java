@@ -0,0 +1,55 @@
+package com.tweetapp.utils;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Base64;
+
+import com.tweetapp.exception.InvalidCursorException;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Opaque keyset cursor. Holds the sort position (createdAt) and the id of the
+ * last item returned, so the next page can continue with a range scan instead
+ * of a skip.
+ * 
+ * @author Tarun Prajapat
+ */
+@Getter
+@AllArgsConstructor
+public class PageCursor {
+
+	private static final char SEPARATOR = ':';
+
+	private final Instant createdAt;
+
+	private final String id;
+
+	/**
+	 * @return url safe string handed to the client
+	 */
+	public String encode() {
+		String raw = (createdAt == null ? "" : Long.toString(createdAt.toEpochMilli())) + SEPARATOR + id;
+		return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * @return cursor decoded from the value sent back by the client
+	 * @throws InvalidCursorException
+	 */
+	public static PageCursor decode(String cursor) throws InvalidCursorException {
+		try {
+			String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+			int separatorAt = raw.indexOf(SEPARATOR);
+			if (separatorAt < 0 || separatorAt == raw.length() - 1) {
+				throw new InvalidCursorException("Cursor is malformed");
+			}
+			String millis = raw.substring(0, separatorAt);
+			Instant createdAt = millis.isEmpty() ? null : Instant.ofEpochMilli(Long.parseLong(millis));
+			return new PageCursor(createdAt, raw.substring(separatorAt + 1));
+		} catch (IllegalArgumentException e) {
+			throw new InvalidCursorException("Cursor is malformed");
+		}
+	}
+}
@@ -0,0 +1,52 @@
+package com.tweetapp.utils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+import com.tweetapp.exception.InvalidCursorException;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Opaque cursor of a ranked result list. Holds the score and id of the last
+ * item returned; the next page continues with the items ranked below it.
+ * 
+ * @author Tarun Prajapat
+ */
+@Getter
+@AllArgsConstructor
+public class ScoreCursor {
+
+	private static final char SEPARATOR = ':';
+
+	private final float score;
+
+	private final String id;
+
+	/**
+	 * @return url safe string handed to the client, the score is kept bit exact
+	 */
+	public String encode() {
+		String raw = Integer.toHexString(Float.floatToIntBits(score)) + SEPARATOR + id;
+		return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * @return cursor decoded from the value sent back by the client
+	 * @throws InvalidCursorException
+	 */
+	public static ScoreCursor decode(String cursor) throws InvalidCursorException {
+		try {
+			String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+			int separatorAt = raw.indexOf(SEPARATOR);
+			if (separatorAt <= 0 || separatorAt == raw.length() - 1) {
+				throw new InvalidCursorException("Cursor is malformed");
+			}
+			float score = Float.intBitsToFloat(Integer.parseUnsignedInt(raw.substring(0, separatorAt), 16));
+			return new ScoreCursor(score, raw.substring(separatorAt + 1));
+		} catch (IllegalArgumentException e) {
+			throw new InvalidCursorException("Cursor is malformed");
+		}
+	}
+}
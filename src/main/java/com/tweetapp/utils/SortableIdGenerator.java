@@ -0,0 +1,204 @@
+package com.tweetapp.utils;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.time.Instant;
+import java.util.Date;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.PreDestroy;
+
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Generates k-sortable ids: 41 bits of milliseconds since 2021-01-01, 10 bits
+ * of node id and 12 bits of per-millisecond sequence. Ids are rendered as 16
+ * zero-padded hex digits, so string order is creation order and new tweets
+ * land at the right edge of the _id index.
+ *
+ * Every instance needs its own node id. tweetapp.id.node-id (0-1023) pins
+ * it; when it is not set the instance leases a free one in the id_nodes
+ * collection, starting from a hash of its host name, renews the lease while
+ * it runs and releases it on shutdown. Startup fails when all 1024 are
+ * leased. nextId checks the lease too: within
+ * tweetapp.id.lease-margin-ms of its expiry, e.g. after a long pause or when
+ * the scheduled renewal runs late, it renews the lease or leases another
+ * node id before issuing more ids, and fails when Mongo cannot be reached
+ * rather than issue ids under a node another instance may hold.
+ *
+ * @author Tarun Prajapat
+ */
+@Component
+public class SortableIdGenerator {
+
+	// 2021-01-01T00:00:00Z
+	private static final long EPOCH = 1609459200000L;
+
+	private static final int NODE_BITS = 10;
+
+	private static final int SEQUENCE_BITS = 12;
+
+	private static final long MAX_NODE = (1L << NODE_BITS) - 1;
+
+	private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+
+	private static final String ID_NODES = "id_nodes";
+
+	private final MongoTemplate mongoTemplate;
+
+	private final long leaseMs;
+
+	private final long leaseMarginMs;
+
+	private final String owner = UUID.randomUUID().toString();
+
+	/**
+	 * Whether node was leased rather than configured
+	 */
+	private final boolean leased;
+
+	private volatile long node;
+
+	/**
+	 * Local clock time the lease of node runs out, counted from before the
+	 * write that took it
+	 */
+	private volatile long leasedUntil;
+
+	/**
+	 * Last issued millisecond and sequence packed together. When the sequence
+	 * overflows it carries into the millisecond, so ids stay unique and ordered
+	 * even if the wall clock stalls or steps back.
+	 */
+	private final AtomicLong lastStamp = new AtomicLong();
+
+	Logger logger = LoggerFactory.getLogger(SortableIdGenerator.class);
+
+	public SortableIdGenerator(MongoTemplate mongoTemplate, @Value("${tweetapp.id.node-id:-1}") long configuredNode,
+			@Value("${tweetapp.id.lease-ms:60000}") long leaseMs,
+			@Value("${tweetapp.id.lease-margin-ms:10000}") long leaseMarginMs) {
+		if (configuredNode > MAX_NODE) {
+			throw new IllegalArgumentException("tweetapp.id.node-id must be between 0 and " + MAX_NODE);
+		}
+		this.mongoTemplate = mongoTemplate;
+		this.leaseMs = leaseMs;
+		this.leaseMarginMs = leaseMarginMs;
+		this.leased = configuredNode < 0;
+		this.node = leased ? leaseNode(nodeFromHostName()) : configuredNode;
+		logger.info("Generating ids as node {}", node);
+	}
+
+	/**
+	 * @return next id, greater than every id this node issued before
+	 */
+	public String nextId() {
+		if (leased && System.currentTimeMillis() > leasedUntil - leaseMarginMs) {
+			ensureLease();
+		}
+		long stamp;
+		while (true) {
+			long previous = lastStamp.get();
+			long now = System.currentTimeMillis() << SEQUENCE_BITS;
+			stamp = now > previous ? now : previous + 1;
+			if (lastStamp.compareAndSet(previous, stamp)) {
+				break;
+			}
+		}
+		long millis = (stamp >>> SEQUENCE_BITS) - EPOCH;
+		long id = (millis << (NODE_BITS + SEQUENCE_BITS)) | (node << SEQUENCE_BITS) | (stamp & SEQUENCE_MASK);
+		return String.format("%016x", id);
+	}
+
+	/**
+	 * @return creation time encoded in an id issued by this generator
+	 */
+	public static Instant timestampOf(String id) {
+		long millis = Long.parseUnsignedLong(id, 16) >>> (NODE_BITS + SEQUENCE_BITS);
+		return Instant.ofEpochMilli(millis + EPOCH);
+	}
+
+	/**
+	 * Extends the lease well before it expires; leases another node id if it
+	 * was lost
+	 */
+	@Scheduled(fixedDelayString = "${tweetapp.id.renew-interval-ms:10000}")
+	public synchronized void renewLease() {
+		if (!leased) {
+			return;
+		}
+		long current = node;
+		long renewedUntil = System.currentTimeMillis() + leaseMs;
+		// still ours when nobody leased it since, even if it expired in between
+		if (mongoTemplate.updateFirst(byOwnedNode(current), new Update().set("leasedUntil", new Date(renewedUntil)),
+				ID_NODES).getMatchedCount() == 0) {
+			logger.error("Lost the lease on node {}, leasing another one", current);
+			node = leaseNode(current);
+		} else {
+			leasedUntil = renewedUntil;
+		}
+	}
+
+	/**
+	 * Renews the lease for nextId, once for all the threads that found it
+	 * about to expire
+	 */
+	private synchronized void ensureLease() {
+		if (System.currentTimeMillis() > leasedUntil - leaseMarginMs) {
+			logger.warn("Lease on node {} is about to expire, renewing it before issuing ids", node);
+			renewLease();
+		}
+	}
+
+	@PreDestroy
+	public void releaseLease() {
+		if (leased) {
+			mongoTemplate.remove(byOwnedNode(node), ID_NODES);
+		}
+	}
+
+	/**
+	 * @return first node id from preferred on that is free or whose lease expired
+	 */
+	private long leaseNode(long preferred) {
+		for (long attempt = 0; attempt <= MAX_NODE; attempt++) {
+			long candidate = (preferred + attempt) & MAX_NODE;
+			Date now = new Date();
+			Query free = Query.query(Criteria.where("_id").is(candidate).and("leasedUntil").not().gt(now));
+			try {
+				// a node leased by another instance makes the upsert hit its _id
+				mongoTemplate.findAndModify(free,
+						new Update().set("owner", owner).set("leasedUntil", new Date(now.getTime() + leaseMs)),
+						FindAndModifyOptions.options().upsert(true).returnNew(true), Document.class, ID_NODES);
+				leasedUntil = now.getTime() + leaseMs;
+				return candidate;
+			} catch (DuplicateKeyException e) {
+				// taken, try the next one
+			}
+		}
+		throw new IllegalStateException("All " + (MAX_NODE + 1) + " id nodes are leased, set tweetapp.id.node-id");
+	}
+
+	private Query byOwnedNode(long nodeId) {
+		return Query.query(Criteria.where("_id").is(nodeId).and("owner").is(owner));
+	}
+
+	private long nodeFromHostName() {
+		try {
+			return (InetAddress.getLocalHost().getHostName().hashCode() & 0x7fffffff) % (MAX_NODE + 1);
+		} catch (UnknownHostException e) {
+			return 0;
+		}
+	}
+}
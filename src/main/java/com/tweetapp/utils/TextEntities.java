@@ -0,0 +1,53 @@
+package com.tweetapp.utils;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Extracts #hashtags and @mentions from tweet text. A tag must start a word,
+ * so e-mail addresses and anchors inside words are not picked up.
+ * 
+ * @author Tarun Prajapat
+ */
+public final class TextEntities {
+
+	private static final Pattern HASHTAG = Pattern.compile("(?<![\\w#])#(\\w{1,100})",
+			Pattern.UNICODE_CHARACTER_CLASS);
+
+	private static final Pattern MENTION = Pattern.compile("(?<![\\w@])@(\\w{1,50})",
+			Pattern.UNICODE_CHARACTER_CLASS);
+
+	private TextEntities() {
+	}
+
+	/**
+	 * @return distinct hashtags without the #, lower case, in order of appearance
+	 */
+	public static List<String> hashtags(String text) {
+		return extract(HASHTAG, text, true);
+	}
+
+	/**
+	 * @return distinct mentioned usernames without the @, in order of appearance
+	 */
+	public static List<String> mentions(String text) {
+		return extract(MENTION, text, false);
+	}
+
+	private static List<String> extract(Pattern pattern, String text, boolean lowerCase) {
+		if (text == null || text.isEmpty()) {
+			return new ArrayList<>();
+		}
+		Set<String> found = new LinkedHashSet<>();
+		Matcher matcher = pattern.matcher(text);
+		while (matcher.find()) {
+			found.add(lowerCase ? matcher.group(1).toLowerCase(Locale.ROOT) : matcher.group(1));
+		}
+		return new ArrayList<>(found);
+	}
+}
@@ -0,0 +1,54 @@
+package com.tweetapp.utils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Splits text into lower case search terms: runs of letters and digits,
+ * without the most common English stop words. #hashtags and @mentions become
+ * plain terms.
+ * 
+ * @author Tarun Prajapat
+ */
+public final class TextTokenizer {
+
+	private static final int MAX_TERM_LENGTH = 40;
+
+	private static final Set<String> STOP_WORDS = Collections.unmodifiableSet(new HashSet<>(Arrays.asList("a", "an",
+			"and", "are", "as", "at", "be", "but", "by", "for", "if", "in", "into", "is", "it", "no", "not", "of", "on",
+			"or", "such", "that", "the", "their", "then", "there", "these", "they", "this", "to", "was", "will",
+			"with")));
+
+	private TextTokenizer() {
+	}
+
+	/**
+	 * @return terms in order of appearance, repeated terms repeated
+	 */
+	public static List<String> tokenize(String text) {
+		List<String> terms = new ArrayList<>();
+		if (text == null) {
+			return terms;
+		}
+		String lower = text.toLowerCase(Locale.ROOT);
+		int start = -1;
+		for (int i = 0; i <= lower.length(); i++) {
+			boolean wordChar = i < lower.length() && Character.isLetterOrDigit(lower.charAt(i));
+			if (wordChar && start < 0) {
+				start = i;
+			} else if (!wordChar && start >= 0) {
+				String term = lower.substring(start, Math.min(i, start + MAX_TERM_LENGTH));
+				if (!STOP_WORDS.contains(term)) {
+					terms.add(term);
+				}
+				start = -1;
+			}
+		}
+		return terms;
+	}
+}
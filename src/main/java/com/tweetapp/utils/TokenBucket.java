@@ -0,0 +1,56 @@
+package com.tweetapp.utils;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free token bucket holding up to capacity tokens, refilled at
+ * ratePerSecond. The whole state is one timestamp, the time at which the
+ * bucket would be full again (generic cell rate algorithm), so taking a
+ * token is a single compare-and-set and an idle bucket costs nothing.
+ *
+ * @author Tarun Prajapat
+ */
+public class TokenBucket {
+
+	/**
+	 * Time to earn one token
+	 */
+	private final long intervalNanos;
+
+	/**
+	 * Time to refill an empty bucket
+	 */
+	private final long capacityNanos;
+
+	private final AtomicLong fullAt;
+
+	public TokenBucket(double ratePerSecond, int capacity, long nowNanos) {
+		if (ratePerSecond <= 0 || capacity <= 0) {
+			throw new IllegalArgumentException("ratePerSecond and capacity must be positive");
+		}
+		this.intervalNanos = (long) (1_000_000_000L / ratePerSecond);
+		this.capacityNanos = intervalNanos * capacity;
+		// starts full
+		this.fullAt = new AtomicLong(nowNanos);
+	}
+
+	/**
+	 * Takes one token if there is one
+	 *
+	 * @return 0 when a token was taken, otherwise nanos until the next one
+	 */
+	public long tryAcquire(long nowNanos) {
+		while (true) {
+			long current = fullAt.get();
+			// nanoTime may be negative, compare differences only
+			long next = (current - nowNanos > 0 ? current : nowNanos) + intervalNanos;
+			long wait = next - nowNanos - capacityNanos;
+			if (wait > 0) {
+				return wait;
+			}
+			if (fullAt.compareAndSet(current, next)) {
+				return 0;
+			}
+		}
+	}
+}
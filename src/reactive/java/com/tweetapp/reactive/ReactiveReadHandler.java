@@ -0,0 +1,190 @@
+package com.tweetapp.reactive;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Sort.Direction;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.server.ServerRequest;
+import org.springframework.web.reactive.function.server.ServerResponse;
+
+import com.tweetapp.dto.ErrorResponse;
+import com.tweetapp.dto.Like;
+import com.tweetapp.dto.TweetResponse;
+import com.tweetapp.entities.TweetView;
+import com.tweetapp.repositories.reactive.ReactiveLikeRepository;
+import com.tweetapp.repositories.reactive.ReactiveTweetRepository;
+import com.tweetapp.repositories.reactive.ReactiveTweetViewRepository;
+import com.tweetapp.services.TweetService;
+import com.tweetapp.services.UserModelService;
+
+import io.micrometer.core.instrument.util.StringUtils;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Reactive versions of the read endpoints: the all-tweets feed, user
+ * timelines, tweet details and user search. Same paths, headers and payloads
+ * as TweetController and UserController, so a client can be pointed at either
+ * stack. Results are pulled from Mongo as the client consumes them; with
+ * Accept: application/x-ndjson the feeds are uncapped streams.
+ *
+ * @author Tarun Prajapat
+ */
+@Component
+@Profile("reactive")
+public class ReactiveReadHandler {
+
+	// newest first, tweetId breaks ties between tweets created in the same millisecond
+	private static final Sort TIMELINE_ORDER = Sort.by(Direction.DESC, "createdAt")
+			.and(Sort.by(Direction.DESC, "tweetId"));
+
+	private static final String LOGGED_IN_USER = "loggedInUser";
+
+//	Injected ReactiveTweetViewRepository bean
+	@Autowired
+	private ReactiveTweetViewRepository tweetViewRepository;
+
+//	Injected ReactiveTweetRepository bean
+	@Autowired
+	private ReactiveTweetRepository tweetRepository;
+
+//	Injected ReactiveLikeRepository bean
+	@Autowired
+	private ReactiveLikeRepository likeRepository;
+
+//	Injected TweetService bean, only for the feed item mapping
+	@Autowired
+	private TweetService tweetService;
+
+//	Injected UserModelService bean, user search is served from memory
+	@Autowired
+	private UserModelService userModelService;
+
+	@Value("${tweetapp.timeline.legacy-cap:200}")
+	private int legacyCap;
+
+	@Value("${tweetapp.stream.chunk-size:100}")
+	private int chunkSize;
+
+	Logger logger = LoggerFactory.getLogger(ReactiveReadHandler.class);
+
+	/**
+	 * GET /tweets/all
+	 *
+	 * @return latest tweets capped at tweetapp.timeline.legacy-cap, uncapped as NDJSON
+	 */
+	public Mono<ServerResponse> getAllTweets(ServerRequest request) {
+		String loggedInUser = request.headers().firstHeader(LOGGED_IN_USER);
+		if (loggedInUser == null) {
+			return missingHeader();
+		}
+		boolean stream = wantsNdjson(request);
+		Flux<TweetView> tweets = stream ? tweetViewRepository.findAllBy(TIMELINE_ORDER)
+				: tweetViewRepository.findAllBy(PageRequest.of(0, legacyCap, TIMELINE_ORDER));
+		return respond(withLikeStatus(tweets, loggedInUser), stream);
+	}
+
+	/**
+	 * GET /tweets/{username}
+	 *
+	 * @return tweets of a user, capped like getAllTweets
+	 */
+	public Mono<ServerResponse> getUserTweets(ServerRequest request) {
+		String username = request.pathVariable("username");
+		String loggedInUser = request.headers().firstHeader(LOGGED_IN_USER);
+		if (loggedInUser == null) {
+			return missingHeader();
+		}
+		if (StringUtils.isBlank(username)) {
+			return ServerResponse.status(HttpStatus.UNPROCESSABLE_ENTITY).contentType(MediaType.APPLICATION_JSON)
+					.bodyValue(new ErrorResponse("Invalid User param received"));
+		}
+		boolean stream = wantsNdjson(request);
+		Flux<TweetView> tweets = stream ? tweetViewRepository.findByUsername(username, TIMELINE_ORDER)
+				: tweetViewRepository.findByUsername(username, PageRequest.of(0, legacyCap, TIMELINE_ORDER));
+		return respond(withLikeStatus(tweets, loggedInUser), stream);
+	}
+
+	/**
+	 * GET /tweets/{username}/{tweetId}, likeStatus is the path user's like
+	 *
+	 * @return tweet details from the read model, or the write model when not projected yet
+	 */
+	public Mono<ServerResponse> getTweet(ServerRequest request) {
+		String username = request.pathVariable("username");
+		String tweetId = request.pathVariable("tweetId");
+		return tweetViewRepository.findById(tweetId)
+				.switchIfEmpty(Mono.defer(() -> tweetRepository.findById(tweetId)
+						.filter(tweet -> tweet.getDeletedAt() == null).map(TweetView::of)))
+				.flatMap(tweet -> likeRepository.existsByTweetIdAndUsername(tweetId, username)
+						.map(liked -> tweetService.toTweetResponse(tweet, liked, username)))
+				.flatMap(tweet -> ServerResponse.ok().contentType(MediaType.APPLICATION_JSON).bodyValue(tweet))
+				// same status and message as TweetController
+				.switchIfEmpty(Mono.defer(() -> ServerResponse.status(HttpStatus.INTERNAL_SERVER_ERROR)
+						.contentType(MediaType.APPLICATION_JSON)
+						.bodyValue(new ErrorResponse("This tweet does not exist anymore."))))
+				.onErrorResume(this::failed);
+	}
+
+	/**
+	 * GET /tweets/user/search/{username}, answered from the in-memory
+	 * UserSearchIndex without blocking
+	 *
+	 * @return first page of matching users
+	 */
+	public Mono<ServerResponse> searchUsers(ServerRequest request) {
+		String username = request.pathVariable("username");
+		return Mono.fromCallable(() -> userModelService.getUsersByUsername(username))
+				.flatMap(users -> ServerResponse.ok().contentType(MediaType.APPLICATION_JSON).bodyValue(users))
+				.onErrorResume(this::failed);
+	}
+
+	/**
+	 * likeStatus is looked up once per tweetapp.stream.chunk-size tweets; the
+	 * next chunk is only read from Mongo once the client has taken this one
+	 */
+	private Flux<TweetResponse> withLikeStatus(Flux<TweetView> tweets, String loggedInUser) {
+		return tweets.buffer(chunkSize).concatMap(chunk -> {
+			List<String> tweetIds = chunk.stream().map(TweetView::getTweetId).collect(Collectors.toList());
+			return likeRepository.findByUsernameAndTweetIdIn(loggedInUser, tweetIds).map(Like::getTweetId)
+					.collect(Collectors.toSet())
+					.flatMapMany(liked -> Flux.fromIterable(chunk).map(tweet -> tweetService.toTweetResponse(tweet,
+							liked.contains(tweet.getTweetId()), loggedInUser)));
+		});
+	}
+
+	private Mono<ServerResponse> respond(Flux<TweetResponse> tweets, boolean stream) {
+		if (stream) {
+			// once streaming has started an error can only end the stream
+			return ServerResponse.ok().contentType(MediaType.APPLICATION_NDJSON).body(tweets, TweetResponse.class);
+		}
+		return tweets.collectList()
+				.flatMap(list -> ServerResponse.ok().contentType(MediaType.APPLICATION_JSON).bodyValue(list))
+				.onErrorResume(this::failed);
+	}
+
+	private boolean wantsNdjson(ServerRequest request) {
+		return request.headers().accept().stream().anyMatch(MediaType.APPLICATION_NDJSON::equalsTypeAndSubtype);
+	}
+
+	private Mono<ServerResponse> missingHeader() {
+		return ServerResponse.badRequest().contentType(MediaType.APPLICATION_JSON)
+				.bodyValue(new ErrorResponse("Missing loggedInUser header"));
+	}
+
+	private Mono<ServerResponse> failed(Throwable e) {
+		logger.error("Reactive read failed", e);
+		return ServerResponse.status(HttpStatus.INTERNAL_SERVER_ERROR).contentType(MediaType.APPLICATION_JSON)
+				.bodyValue(new ErrorResponse("Application has faced an issue"));
+	}
+}
@@ -0,0 +1,112 @@
+package com.tweetapp.reactive;
+
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.codec.json.Jackson2JsonDecoder;
+import org.springframework.http.codec.json.Jackson2JsonEncoder;
+import org.springframework.http.server.reactive.HttpHandler;
+import org.springframework.http.server.reactive.ReactorHttpHandlerAdapter;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.server.HandlerStrategies;
+import org.springframework.web.reactive.function.server.RouterFunction;
+import org.springframework.web.reactive.function.server.RouterFunctions;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.util.pattern.PathPattern;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.server.HttpServer;
+
+/**
+ * Serves the reactive read endpoints on Reactor Netty, on their own port
+ * (tweetapp.reactive.port) next to the servlet stack, so both can be load
+ * tested side by side against the same database. Only active with the
+ * reactive profile; writes and every other endpoint stay on the servlet
+ * stack. Metrics: tweetapp.reactive.requests tagged uri and status, the
+ * counterpart of http.server.requests.
+ *
+ * @author Tarun Prajapat
+ */
+@Component
+@Profile("reactive")
+public class ReactiveReadServer implements SmartLifecycle {
+
+	private static final String REQUESTS_METRIC = "tweetapp.reactive.requests";
+
+	private final HttpHandler httpHandler;
+
+	private final int port;
+
+	private volatile DisposableServer server;
+
+	Logger logger = LoggerFactory.getLogger(ReactiveReadServer.class);
+
+	public ReactiveReadServer(ReactiveReadHandler handler, ObjectMapper objectMapper, MeterRegistry meterRegistry,
+			@Value("${tweetapp.reactive.port:8083}") int port) {
+		this.port = port;
+		// same ObjectMapper as the servlet stack, so payloads are identical
+		HandlerStrategies strategies = HandlerStrategies.builder().codecs(configurer -> {
+			configurer.defaultCodecs().jackson2JsonEncoder(new Jackson2JsonEncoder(objectMapper));
+			configurer.defaultCodecs().jackson2JsonDecoder(new Jackson2JsonDecoder(objectMapper));
+		}).webFilter(requestTimer(meterRegistry)).build();
+		this.httpHandler = RouterFunctions.toHttpHandler(routes(handler), strategies);
+	}
+
+	/**
+	 * Same paths as TweetController and UserController, more specific ones
+	 * first
+	 */
+	private RouterFunction<ServerResponse> routes(ReactiveReadHandler handler) {
+		return RouterFunctions.route()
+				.path("/api/v1.0", builder -> builder.GET("/tweets/all", handler::getAllTweets)
+						.GET("/tweets/user/search/{username}", handler::searchUsers)
+						.GET("/tweets/{username}/{tweetId}", handler::getTweet)
+						.GET("/tweets/{username}", handler::getUserTweets))
+				.build();
+	}
+
+	private WebFilter requestTimer(MeterRegistry meterRegistry) {
+		return (exchange, chain) -> {
+			long start = System.nanoTime();
+			return chain.filter(exchange).doFinally(signal -> {
+				// set by the router once a route matched
+				PathPattern pattern = exchange.getAttribute(RouterFunctions.MATCHING_PATTERN_ATTRIBUTE);
+				HttpStatus status = exchange.getResponse().getStatusCode();
+				Timer.builder(REQUESTS_METRIC).tag("uri", pattern == null ? "UNKNOWN" : pattern.getPatternString())
+						.tag("status", String.valueOf(status == null ? HttpStatus.OK.value() : status.value()))
+						.publishPercentileHistogram().register(meterRegistry)
+						.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+			});
+		};
+	}
+
+	@Override
+	public void start() {
+		server = HttpServer.create().port(port).handle(new ReactorHttpHandlerAdapter(httpHandler)).bindNow();
+		logger.info("Reactive read API started on port {}", server.port());
+	}
+
+	@Override
+	public void stop() {
+		DisposableServer running = server;
+		if (running != null) {
+			running.disposeNow();
+			server = null;
+		}
+	}
+
+	@Override
+	public boolean isRunning() {
+		return server != null;
+	}
+}
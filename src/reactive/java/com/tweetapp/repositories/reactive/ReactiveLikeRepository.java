@@ -0,0 +1,33 @@
+package com.tweetapp.repositories.reactive;
+
+import java.util.Collection;
+
+import org.springframework.data.mongodb.repository.Query;
+import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
+import org.springframework.stereotype.Repository;
+
+import com.tweetapp.dto.Like;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Non-blocking likeStatus lookups for the reactive read API
+ * @author Tarun Prajapat
+ */
+@Repository
+public interface ReactiveLikeRepository extends ReactiveMongoRepository<Like, String> {
+
+	/**
+	 * @return true when the user has liked the tweet
+	 * */
+	Mono<Boolean> existsByTweetIdAndUsername(String tweetId, String username);
+
+	/**
+	 * Covered by the tweetId_username index
+	 * 
+	 * @return likes of the user among the given tweets, only tweetId is populated
+	 * */
+	@Query(value = "{ 'tweetId': { '$in': ?1 }, 'username': ?0 }", fields = "{ 'tweetId': 1, '_id': 0 }")
+	Flux<Like> findByUsernameAndTweetIdIn(String username, Collection<String> tweetIds);
+}
@@ -0,0 +1,17 @@
+package com.tweetapp.repositories.reactive;
+
+import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
+import org.springframework.stereotype.Repository;
+
+import com.tweetapp.entities.Tweet;
+
+/**
+ * @author Tarun Prajapat
+ * 
+ * Non-blocking access to the write model, only read by the reactive API for
+ * tweets not projected yet
+ */
+@Repository
+public interface ReactiveTweetRepository extends ReactiveMongoRepository<Tweet, String> {
+
+}
@@ -0,0 +1,43 @@
+package com.tweetapp.repositories.reactive;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.repository.Query;
+import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
+import org.springframework.stereotype.Repository;
+
+import com.tweetapp.entities.TweetView;
+
+import reactor.core.publisher.Flux;
+
+/**
+ * @author Tarun Prajapat
+ * 
+ * Non-blocking access to the feed read model, used by the reactive read API.
+ * Queries mirror TweetViewRepository and use the same indexes.
+ */
+@Repository
+public interface ReactiveTweetViewRepository extends ReactiveMongoRepository<TweetView, String> {
+
+	/**
+	 * @return first tweets of the timeline, ordered by the given pageable
+	 * */
+	@Query("{}")
+	Flux<TweetView> findAllBy(Pageable pageable);
+
+	/**
+	 * @return whole timeline in the given order, emitted as the subscriber requests it
+	 * */
+	@Query("{}")
+	Flux<TweetView> findAllBy(Sort sort);
+
+	/**
+	 * @return first tweets done by user, backed by the user_timeline index
+	 * */
+	Flux<TweetView> findByUsername(String username, Pageable pageable);
+
+	/**
+	 * @return all tweets done by user in the given order
+	 * */
+	Flux<TweetView> findByUsername(String username, Sort sort);
+}
@@ -0,0 +1,81 @@
+package com.tweetapp.configs;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Token buckets of AdmissionControlFilter: one per caller, whatever the
+ * {username} of the path says.
+ *
+ * @author Tarun Prajapat
+ */
+class AdmissionControlFilterTest {
+
+	private static final String CONTEXT_PATH = "/api/v1.0";
+
+	private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+	// one request per caller, refilled far slower than the test runs
+	private final AdmissionControlFilter filter = new AdmissionControlFilter(
+			new AdaptiveConcurrencyLimit(meterRegistry, 100, 10, 1000, 1.5, 0.2, 60), new ObjectMapper(),
+			meterRegistry, 0.001, 1, 1000);
+
+	@Test
+	void callersDoNotShareABucket() throws Exception {
+		assertThat(post("alice", "alice", "10.0.0.1")).isEqualTo(HttpStatus.OK.value());
+		assertThat(post("alice", "alice", "10.0.0.1")).isEqualTo(HttpStatus.TOO_MANY_REQUESTS.value());
+		// same proxy address, another user
+		assertThat(post("bob", "bob", "10.0.0.1")).isEqualTo(HttpStatus.OK.value());
+	}
+
+	@Test
+	void pathUsernameDoesNotGiveAFreshBucket() throws Exception {
+		assertThat(post("carol", "carol", "10.0.0.2")).isEqualTo(HttpStatus.OK.value());
+		assertThat(post("carol", "someone-else", "10.0.0.2")).isEqualTo(HttpStatus.TOO_MANY_REQUESTS.value());
+	}
+
+	@Test
+	void anonymousCallersAreKeyedOnTheirAddress() throws Exception {
+		assertThat(post(null, "dave", "10.0.0.3")).isEqualTo(HttpStatus.OK.value());
+		assertThat(post(null, "dave", "10.0.0.3")).isEqualTo(HttpStatus.TOO_MANY_REQUESTS.value());
+		assertThat(post(null, "dave", "10.0.0.4")).isEqualTo(HttpStatus.OK.value());
+	}
+
+	@Test
+	void readsAreNotLimited() throws Exception {
+		for (int i = 0; i < 3; i++) {
+			MockHttpServletRequest request = request("GET", "/tweets/all", "erin", "10.0.0.5");
+			MockHttpServletResponse response = new MockHttpServletResponse();
+			filter.doFilter(request, response, new MockFilterChain());
+			assertThat(response.getStatus()).isEqualTo(HttpStatus.OK.value());
+		}
+	}
+
+	private int post(String loggedInUser, String pathUsername, String remoteAddress) throws Exception {
+		MockHttpServletRequest request = request("POST", "/tweets/" + pathUsername + "/add", loggedInUser,
+				remoteAddress);
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		filter.doFilter(request, response, new MockFilterChain());
+		return response.getStatus();
+	}
+
+	private static MockHttpServletRequest request(String method, String path, String loggedInUser,
+			String remoteAddress) {
+		MockHttpServletRequest request = new MockHttpServletRequest(method, CONTEXT_PATH + path);
+		request.setContextPath(CONTEXT_PATH);
+		request.setRemoteAddr(remoteAddress);
+		if (loggedInUser != null) {
+			request.addHeader("loggedInUser", loggedInUser);
+		}
+		return request;
+	}
+}
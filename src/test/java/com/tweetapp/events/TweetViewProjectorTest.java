@@ -0,0 +1,191 @@
+package com.tweetapp.events;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.UUID;
+import java.util.function.Supplier;
+
+import org.apache.kafka.clients.admin.AdminClient;
+import org.apache.kafka.clients.admin.AdminClientConfig;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.listener.MessageListenerContainer;
+import org.springframework.kafka.test.context.EmbeddedKafka;
+
+import com.tweetapp.configs.KafkaConfig;
+import com.tweetapp.dto.Comment;
+import com.tweetapp.entities.Tweet;
+import com.tweetapp.entities.TweetTombstone;
+import com.tweetapp.entities.TweetView;
+
+/**
+ * TweetViewProjector against an embedded Kafka broker and an embedded
+ * mongod: projection of a tweet's events, a replay of the whole log, and
+ * events delivered out of order.
+ *
+ * @author Tarun Prajapat
+ */
+@SpringBootTest(classes = TweetViewProjectorTest.Config.class, properties = {
+		"tweetapp.view.group-id=tweet-view-test", "tweetapp.kafka.consumer.concurrency=1",
+		"spring.mongodb.embedded.version=3.6.5" })
+@EmbeddedKafka(topics = "tweets", partitions = 1, bootstrapServersProperty = "spring.kafka.bootstrap-servers")
+class TweetViewProjectorTest {
+
+	private static final Duration TIMEOUT = Duration.ofSeconds(30);
+
+	@Configuration
+	@EnableAutoConfiguration
+	@Import({ KafkaConfig.class, TweetViewProjector.class })
+	static class Config {
+	}
+
+	@Autowired
+	private KafkaTemplate<String, TweetEvent> kafkaTemplate;
+
+	@Autowired
+	private MongoTemplate mongoTemplate;
+
+	@Autowired
+	private KafkaListenerEndpointRegistry listeners;
+
+	@Value("${spring.kafka.bootstrap-servers}")
+	private String brokers;
+
+	@Test
+	void projectsTheEventsOfATweet() throws Exception {
+		String tweetId = newTweetId();
+		send(TweetEvent.tweetCreated(tweet(tweetId, "first tweet")));
+		send(TweetEvent.tweetLiked(tweetId, "bob", 1));
+		send(TweetEvent.commentAdded(comment(tweetId, "c1"), 1));
+		send(TweetEvent.tweetUpdated(tweetId, "alice", "edited tweet"));
+
+		TweetView view = await(() -> {
+			TweetView current = view(tweetId);
+			return current != null && "edited tweet".equals(current.getTweetText()) ? current : null;
+		});
+		assertThat(view.getUsername()).isEqualTo("alice");
+		assertThat(view.getLikesCount()).isEqualTo(1);
+		assertThat(view.getCommentsCount()).isEqualTo(1);
+		assertThat(view.getRecentComments()).extracting(Comment::getCommentId).containsExactly("c1");
+	}
+
+	@Test
+	void replayingTheLogRebuildsTheSameView() throws Exception {
+		String tweetId = newTweetId();
+		send(TweetEvent.tweetCreated(tweet(tweetId, "replayed tweet")));
+		send(TweetEvent.tweetLiked(tweetId, "bob", 1));
+		send(TweetEvent.tweetLiked(tweetId, "carol", 2));
+		send(TweetEvent.commentAdded(comment(tweetId, "c1"), 1));
+		send(TweetEvent.tweetUnliked(tweetId, "bob", 1));
+		TweetView projected = await(() -> {
+			TweetView current = view(tweetId);
+			return current != null && current.getCommentsCount() == 1 && current.getLikesCount() == 1 ? current
+					: null;
+		});
+
+		// at least once delivery: the same events again change nothing
+		send(TweetEvent.tweetLiked(tweetId, "carol", 2));
+		send(TweetEvent.commentAdded(comment(tweetId, "c1"), 1));
+		send(TweetEvent.tweetUnliked(tweetId, "bob", 1));
+		String marker = newTweetId();
+		send(TweetEvent.tweetCreated(tweet(marker, "marker")));
+		await(() -> view(marker));
+		assertThat(view(tweetId)).isEqualTo(projected);
+
+		// rebuild: empty view, whole log again from offset 0
+		MessageListenerContainer container = listeners.getListenerContainer("tweet-view");
+		container.stop();
+		mongoTemplate.dropCollection(TweetView.class);
+		try (AdminClient admin = AdminClient
+				.create(Collections.singletonMap(AdminClientConfig.BOOTSTRAP_SERVERS_CONFIG, brokers))) {
+			admin.alterConsumerGroupOffsets("tweet-view-test",
+					Collections.singletonMap(new TopicPartition("tweets", 0), new OffsetAndMetadata(0))).all().get();
+		}
+		container.start();
+		await(() -> view(marker));
+		assertThat(view(tweetId)).isEqualTo(projected);
+	}
+
+	@Test
+	void toleratesEventsDeliveredOutOfOrder() throws Exception {
+		// counters before the tweet itself
+		String early = newTweetId();
+		send(TweetEvent.tweetLiked(early, "bob", 3));
+		send(TweetEvent.commentAdded(comment(early, "c1"), 2));
+		send(TweetEvent.tweetCreated(tweet(early, "late creation")));
+		TweetView view = await(() -> {
+			TweetView current = view(early);
+			return current != null && current.getUsername() != null ? current : null;
+		});
+		assertThat(view.getLikesCount()).isEqualTo(3);
+		assertThat(view.getCommentsCount()).isEqualTo(2);
+		assertThat(view.getTweetText()).isEqualTo("late creation");
+
+		// events of a deleted tweet arriving after the delete
+		String deleted = newTweetId();
+		send(TweetEvent.tweetCreated(tweet(deleted, "to be deleted")));
+		send(TweetEvent.tweetDeleted(deleted, "alice"));
+		await(() -> mongoTemplate.findById(deleted, TweetTombstone.class));
+		send(TweetEvent.tweetLiked(deleted, "bob", 1));
+		send(TweetEvent.commentAdded(comment(deleted, "c2"), 1));
+		send(TweetEvent.tweetUpdated(deleted, "alice", "resurrected"));
+		String marker = newTweetId();
+		send(TweetEvent.tweetCreated(tweet(marker, "marker")));
+		await(() -> view(marker));
+		assertThat(view(deleted)).isNull();
+	}
+
+	private void send(TweetEvent event) throws Exception {
+		kafkaTemplate.send("tweets", event.getTweetId(), event).get();
+	}
+
+	private TweetView view(String tweetId) {
+		return mongoTemplate.findById(tweetId, TweetView.class);
+	}
+
+	private <T> T await(Supplier<T> condition) throws InterruptedException {
+		Instant deadline = Instant.now().plus(TIMEOUT);
+		while (Instant.now().isBefore(deadline)) {
+			T result = condition.get();
+			if (result != null) {
+				return result;
+			}
+			Thread.sleep(100);
+		}
+		throw new AssertionError("Nothing projected within " + TIMEOUT);
+	}
+
+	private static String newTweetId() {
+		return UUID.randomUUID().toString().replace("-", "");
+	}
+
+	private static Tweet tweet(String tweetId, String text) {
+		Tweet tweet = new Tweet();
+		tweet.setTweetId(tweetId);
+		tweet.setUsername("alice");
+		tweet.setFirstName("Alice");
+		tweet.setLastName("Smith");
+		tweet.setTweetText(text);
+		tweet.setCreatedAt(Instant.now());
+		return tweet;
+	}
+
+	private static Comment comment(String tweetId, String commentId) {
+		Comment comment = new Comment(tweetId, "bob", "reply " + commentId, Instant.now());
+		comment.setCommentId(commentId);
+		return comment;
+	}
+}
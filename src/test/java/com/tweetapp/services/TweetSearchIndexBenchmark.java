@@ -0,0 +1,120 @@
+package com.tweetapp.services;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Search latency of TweetSearchIndex at a million tweets. Skipped in the
+ * normal build, run it with
+ *
+ * mvn test -Dtest=TweetSearchIndexBenchmark -Dbenchmark=true
+ *
+ * (-Dbenchmark.tweets and -Dbenchmark.queries change the sizes). Tweets are
+ * 8 to 20 words drawn from a Zipf distributed vocabulary, like real text a
+ * few terms are in most tweets and most terms are rare; queries are one to
+ * three words drawn the same way. Logs p50/p99/p99.9 of single searches
+ * on one thread and fails when p99 misses tweetapp.search.p99-target-ms.
+ * Also times a compaction after a quarter of the tweets are edited.
+ *
+ * @author Tarun Prajapat
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class TweetSearchIndexBenchmark {
+
+	private static final int TWEETS = Integer.getInteger("benchmark.tweets", 1_000_000);
+
+	private static final int QUERIES = Integer.getInteger("benchmark.queries", 100_000);
+
+	private static final int VOCABULARY = 50_000;
+
+	private static final long P99_TARGET_MS = 50;
+
+	private final Random random = new Random(42);
+
+	Logger logger = LoggerFactory.getLogger(TweetSearchIndexBenchmark.class);
+
+	private final double[] cumulative = zipf(VOCABULARY);
+
+	@Test
+	void searchP99AtAMillionTweets() {
+		TweetSearchIndex index = new TweetSearchIndex(new SimpleMeterRegistry(), P99_TARGET_MS);
+		long start = System.nanoTime();
+		for (int i = 0; i < TWEETS; i++) {
+			index.index(tweetId(i), text(8 + random.nextInt(13)));
+		}
+		logger.info("Indexed {} tweets in {} ms", TWEETS, millis(System.nanoTime() - start));
+
+		for (int i = 0; i < QUERIES / 5; i++) {
+			index.search(text(1 + random.nextInt(3)), null, 20);
+		}
+		long[] nanos = new long[QUERIES];
+		long hits = 0;
+		for (int i = 0; i < QUERIES; i++) {
+			String query = text(1 + random.nextInt(3));
+			long queryStart = System.nanoTime();
+			hits += index.search(query, null, 20).size();
+			nanos[i] = System.nanoTime() - queryStart;
+		}
+		Arrays.sort(nanos);
+		double p99 = percentile(nanos, 0.99);
+		logger.info(String.format("%d searches, %.1f hits each: p50 %.3f ms, p99 %.3f ms, p99.9 %.3f ms, max %.3f ms",
+				QUERIES, (double) hits / QUERIES, percentile(nanos, 0.5), p99, percentile(nanos, 0.999),
+				nanos[QUERIES - 1] / 1e6));
+
+		for (int i = 0; i < TWEETS / 4; i++) {
+			index.index(tweetId(random.nextInt(TWEETS)), text(8 + random.nextInt(13)));
+		}
+		start = System.nanoTime();
+		index.compact();
+		logger.info("Compacted after {} edits in {} ms", TWEETS / 4, millis(System.nanoTime() - start));
+
+		assertThat(p99).isLessThan(P99_TARGET_MS);
+	}
+
+	/**
+	 * @return words of the vocabulary, most frequent first, drawn by rank
+	 */
+	private String text(int words) {
+		StringBuilder text = new StringBuilder();
+		for (int i = 0; i < words; i++) {
+			int rank = Arrays.binarySearch(cumulative, random.nextDouble());
+			text.append('w').append(Integer.toString(rank < 0 ? -rank - 1 : rank, 36)).append(' ');
+		}
+		return text.toString();
+	}
+
+	private static double[] zipf(int size) {
+		double[] cumulative = new double[size];
+		double sum = 0;
+		for (int rank = 0; rank < size; rank++) {
+			sum += 1.0 / (rank + 1);
+			cumulative[rank] = sum;
+		}
+		for (int rank = 0; rank < size; rank++) {
+			cumulative[rank] /= sum;
+		}
+		return cumulative;
+	}
+
+	private static String tweetId(int i) {
+		return String.format("%024x", i);
+	}
+
+	private static double percentile(long[] sorted, double quantile) {
+		return sorted[Math.min(sorted.length - 1, (int) Math.ceil(quantile * sorted.length) - 1)] / 1e6;
+	}
+
+	private static long millis(long nanos) {
+		return TimeUnit.NANOSECONDS.toMillis(nanos);
+	}
+}
@@ -0,0 +1,256 @@
+package com.tweetapp.services;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.util.CloseableIterator;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.tweetapp.entities.Tweet;
+import com.tweetapp.services.TweetSearchIndex.Hit;
+import com.tweetapp.utils.ScoreCursor;
+import com.tweetapp.utils.TextTokenizer;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * TweetSearchIndex without Spring: hits checked against a scan of the
+ * indexed texts, before and after edits and compaction, cursor paging over
+ * tied scores, and live updates racing the build.
+ *
+ * @author Tarun Prajapat
+ */
+class TweetSearchIndexTest {
+
+	private static final int TWEETS = 2000;
+
+	private static final int VOCABULARY = 60;
+
+	private final Random random = new Random(7);
+
+	private TweetSearchIndex index;
+
+	/**
+	 * Live texts by tweetId, in the order they were last indexed
+	 */
+	private Map<String, String> texts;
+
+	@BeforeEach
+	void indexTweets() {
+		index = newIndex();
+		texts = new LinkedHashMap<>();
+		for (int i = 0; i < TWEETS; i++) {
+			index(tweetId(i), text());
+		}
+	}
+
+	@Test
+	void hitsAreTheTweetsContainingEveryTerm() {
+		assertMatchesScan();
+	}
+
+	@Test
+	void editsAndCompactionKeepTheHits() {
+		editAndRemove();
+		assertMatchesScan();
+		Map<String, List<String>> before = new LinkedHashMap<>();
+		queries().forEach(query -> before.put(query, ids(index.search(query, null, Integer.MAX_VALUE))));
+
+		index.compact();
+
+		assertMatchesScan();
+		queries().forEach(query -> assertThat(new HashSet<>(ids(index.search(query, null, Integer.MAX_VALUE))))
+				.as(query).isEqualTo(new HashSet<>(before.get(query))));
+	}
+
+	@Test
+	void compactedIndexRanksLikeAFreshOne() {
+		editAndRemove();
+		index.compact();
+		TweetSearchIndex fresh = newIndex();
+		texts.forEach(fresh::index);
+		for (String query : queries()) {
+			assertThat(index.search(query, null, Integer.MAX_VALUE))
+					.usingElementComparator((left, right) -> left.getTweetId().equals(right.getTweetId())
+							&& left.getScore() == right.getScore() ? 0 : 1)
+					.as(query).containsExactlyElementsOf(fresh.search(query, null, Integer.MAX_VALUE));
+		}
+	}
+
+	@Test
+	void cursorPagesListEveryHitOnceAcrossTies() {
+		// identical texts score the same, only the tweetId orders them
+		for (int i = 0; i < 50; i++) {
+			index("t" + i, "tied words here");
+		}
+		editAndRemove();
+		index.compact();
+		for (String query : Arrays.asList("tied", "tied words", queries().get(0))) {
+			List<String> all = ids(index.search(query, null, Integer.MAX_VALUE));
+			List<String> paged = new ArrayList<>();
+			ScoreCursor after = null;
+			while (true) {
+				List<Hit> page = index.search(query, after, 7);
+				paged.addAll(ids(page));
+				if (page.size() < 7) {
+					break;
+				}
+				Hit last = page.get(page.size() - 1);
+				after = new ScoreCursor(last.getScore(), last.getTweetId());
+			}
+			assertThat(paged).as(query).isEqualTo(all);
+		}
+	}
+
+	@Test
+	void liveUpdatesWinOverTheBuild() throws Exception {
+		TweetSearchIndex built = newIndex();
+		CountDownLatch done = new CountDownLatch(1);
+		List<Tweet> stored = Arrays.asList(tweet("a", "stored alpha"), tweet("b", "stored beta"),
+				tweet("c", "stored gamma"));
+		MongoTemplate mongoTemplate = mock(MongoTemplate.class);
+		when(mongoTemplate.stream(any(Query.class), eq(Tweet.class))).thenReturn(new CloseableIterator<Tweet>() {
+
+			private final Iterator<Tweet> tweets = stored.iterator();
+
+			@Override
+			public boolean hasNext() {
+				return tweets.hasNext();
+			}
+
+			@Override
+			public Tweet next() {
+				Tweet tweet = tweets.next();
+				if (tweet.getTweetId().equals("a")) {
+					// edited and deleted live after the build read them
+					built.index("b", "edited beta");
+					built.remove("c");
+				}
+				return tweet;
+			}
+
+			@Override
+			public void close() {
+				done.countDown();
+			}
+		});
+		ReflectionTestUtils.setField(built, "mongoTemplate", mongoTemplate);
+
+		built.build();
+		assertThat(done.await(10, TimeUnit.SECONDS)).isTrue();
+
+		assertThat(ids(built.search("stored", null, 10))).containsExactly("a");
+		assertThat(ids(built.search("edited beta", null, 10))).containsExactly("b");
+		assertThat(built.search("gamma", null, 10)).isEmpty();
+	}
+
+	private void assertMatchesScan() {
+		for (String query : queries()) {
+			List<String> terms = TextTokenizer.tokenize(query);
+			Set<String> expected = texts.entrySet().stream()
+					.filter(entry -> TextTokenizer.tokenize(entry.getValue()).containsAll(terms))
+					.map(Map.Entry::getKey).collect(Collectors.toSet());
+			List<Hit> hits = index.search(query, null, Integer.MAX_VALUE);
+			assertThat(new HashSet<>(ids(hits))).as(query).isEqualTo(expected);
+			assertThat(ids(hits)).as(query).doesNotHaveDuplicates();
+			for (int i = 1; i < hits.size(); i++) {
+				assertThat(hits.get(i).getScore()).as(query).isLessThanOrEqualTo(hits.get(i - 1).getScore());
+			}
+		}
+	}
+
+	/**
+	 * Rewrites a third of the tweets and removes some, enough tombstones for
+	 * compact to run
+	 */
+	private void editAndRemove() {
+		for (int i = 0; i < TWEETS / 3; i++) {
+			index(tweetId(random.nextInt(TWEETS)), text());
+		}
+		for (int i = 0; i < TWEETS / 20; i++) {
+			String tweetId = tweetId(random.nextInt(TWEETS));
+			index.remove(tweetId);
+			texts.remove(tweetId);
+		}
+	}
+
+	private void index(String tweetId, String text) {
+		index.index(tweetId, text);
+		if (!text.equals(texts.get(tweetId))) {
+			// an unchanged text keeps its document
+			texts.remove(tweetId);
+			texts.put(tweetId, text);
+		}
+	}
+
+	/**
+	 * @return queries pairing rare and common terms, so the driving list and
+	 *         the probed ones differ a lot in length
+	 */
+	private List<String> queries() {
+		List<String> queries = new ArrayList<>();
+		for (int rank = 0; rank < VOCABULARY; rank += 3) {
+			queries.add(word(rank));
+			queries.add(word(rank) + " " + word(0));
+			queries.add(word(0) + " " + word(1) + " " + word(rank));
+			queries.add(word(rank) + " " + word(VOCABULARY - 1 - rank));
+		}
+		return queries;
+	}
+
+	/**
+	 * @return 3 to 10 words, low ranks far more frequent than high ones
+	 */
+	private String text() {
+		StringBuilder text = new StringBuilder();
+		int words = 3 + random.nextInt(8);
+		for (int i = 0; i < words; i++) {
+			double uniform = random.nextDouble();
+			text.append(word((int) (uniform * uniform * uniform * VOCABULARY))).append(' ');
+		}
+		return text.toString();
+	}
+
+	private static String word(int rank) {
+		return "w" + rank;
+	}
+
+	private static TweetSearchIndex newIndex() {
+		return new TweetSearchIndex(new SimpleMeterRegistry(), 50);
+	}
+
+	private static List<String> ids(List<Hit> hits) {
+		return hits.stream().map(Hit::getTweetId).collect(Collectors.toList());
+	}
+
+	private static String tweetId(int i) {
+		return String.format("%024x", i);
+	}
+
+	private static Tweet tweet(String tweetId, String text) {
+		Tweet tweet = new Tweet();
+		tweet.setTweetId(tweetId);
+		tweet.setTweetText(text);
+		return tweet;
+	}
+}
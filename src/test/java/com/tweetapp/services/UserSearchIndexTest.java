@@ -0,0 +1,157 @@
+package com.tweetapp.services;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.tweetapp.dto.UserPage;
+import com.tweetapp.dto.UserSummary;
+import com.tweetapp.entities.UserModel;
+import com.tweetapp.events.CacheInvalidationBus;
+
+/**
+ * Paging of UserSearchIndex over the merged username and name word ranges:
+ * every matching user once, in the order of their first matching key, with
+ * pages cut short by the key budget and cursors on keys both ranges share.
+ *
+ * @author Tarun Prajapat
+ */
+class UserSearchIndexTest {
+
+	private UserSearchIndex index;
+
+	private final List<UserModel> users = new ArrayList<>();
+
+	@BeforeEach
+	void newIndex() {
+		index = new UserSearchIndex(mock(CacheInvalidationBus.class));
+	}
+
+	@Test
+	void userMatchingOnUsernameAndNameIsListedOnce() throws Exception {
+		add("anna", "Anna", "Andrews");
+		add("ann", "Ann", null);
+		add("annabel", "Bel", "Annan");
+		add("bob", "Andy", "Bob");
+
+		// first matching keys: andrews (anna), andy (bob), username ann, username annabel
+		assertThat(usernames(index.search("an", null, 10))).containsExactly("anna", "bob", "ann", "annabel");
+		for (int limit = 1; limit <= 4; limit++) {
+			assertThat(pageThrough("an", limit)).containsExactly("anna", "bob", "ann", "annabel");
+		}
+	}
+
+	@Test
+	void pagesListEveryMatchOnceInKeyOrder() throws Exception {
+		Random random = new Random(3);
+		String[] words = { "al", "alex", "alma", "ali", "bo", "alberto", "Al-Amin", "ALICE" };
+		for (int i = 0; i < 300; i++) {
+			add(words[random.nextInt(words.length)] + i, random.nextBoolean() ? words[random.nextInt(words.length)]
+					: null, words[random.nextInt(words.length)] + " " + words[random.nextInt(words.length)]);
+		}
+		for (String prefix : Arrays.asList("a", "al", "ali", "alex1", "b", "amin")) {
+			List<String> expected = expected(prefix);
+			for (int limit : new int[] { 1, 2, 3, 7, 50 }) {
+				assertThat(pageThrough(prefix, limit)).as(prefix + " by " + limit).isEqualTo(expected);
+			}
+		}
+	}
+
+	@Test
+	void keyBudgetEndsAPageShortWithACursor() throws Exception {
+		// ten keys of the same user ahead of everyone else
+		add("zed", "Ba Bb Bc Bd Be", "Bf Bg Bh Bi Bj");
+		add("bob", "Bo", "Bob");
+		add("bobby", null, null);
+
+		// budget (2 + 1) * 4: zed's ten keys, bo, then the username key bob that equals a name key
+		UserPage first = index.search("b", null, 2);
+		assertThat(first.getUsers()).extracting(UserSummary::getUsername).containsExactly("zed", "bob");
+		assertThat(first.getNextCursor()).isNotNull();
+
+		UserPage second = index.search("b", first.getNextCursor(), 2);
+		assertThat(second.getUsers()).extracting(UserSummary::getUsername).containsExactly("bobby");
+		assertThat(second.getNextCursor()).isNull();
+	}
+
+	@Test
+	void pageCutByTheBudgetBeforeAnyMatchStillMovesOn() throws Exception {
+		add("amy", "Zoe", null);
+		add("zed", "A1 A2 A3 A4 A5 A6 A7 A8 A9", "Aa Ab Ac Ad Ae Af Ag");
+		add("ava", null, null);
+
+		// budget (1 + 1) * 4: zed's first key is a match, the other seven are skipped
+		UserPage first = index.search("a", null, 1);
+		assertThat(first.getUsers()).extracting(UserSummary::getUsername).containsExactly("zed");
+		UserPage second = index.search("a", first.getNextCursor(), 1);
+		// the next eight keys are zed's too, nothing to return yet
+		assertThat(second.getUsers()).isEmpty();
+		assertThat(second.getNextCursor()).isNotNull();
+		assertThat(pageThrough("a", 1)).containsExactly("zed", "amy", "ava");
+	}
+
+	private void add(String username, String firstName, String lastName) {
+		UserModel user = new UserModel();
+		user.setUsername(username);
+		user.setFirstName(firstName);
+		user.setLastName(lastName);
+		users.add(user);
+		index.add(user);
+	}
+
+	private List<String> pageThrough(String prefix, int limit) throws Exception {
+		List<String> found = new ArrayList<>();
+		String cursor = null;
+		int pages = 0;
+		do {
+			UserPage page = index.search(prefix, cursor, limit);
+			page.getUsers().forEach(user -> found.add(user.getUsername()));
+			cursor = page.getNextCursor();
+			assertThat(++pages).as("pages").isLessThan(10_000);
+		} while (cursor != null);
+		return found;
+	}
+
+	/**
+	 * @return usernames matching prefix, ordered by their first matching key
+	 */
+	private List<String> expected(String prefix) {
+		return users.stream().map(user -> firstKey(user, prefix)).filter(key -> key != null)
+				.sorted(Comparator.naturalOrder()).map(key -> key.substring(key.lastIndexOf('\u0000') + 1))
+				.collect(Collectors.toList());
+	}
+
+	private static String firstKey(UserModel user, String prefix) {
+		String first = null;
+		String username = user.getUsername().toLowerCase(Locale.ROOT);
+		if (username.startsWith(prefix)) {
+			first = username + '\u0000' + user.getUsername();
+		}
+		for (String name : new String[] { user.getFirstName(), user.getLastName() }) {
+			if (name == null) {
+				continue;
+			}
+			for (String word : name.toLowerCase(Locale.ROOT).split("[\\s\\p{Punct}]+")) {
+				String key = word + '\u0000' + user.getUsername();
+				if (!word.isEmpty() && word.startsWith(prefix) && (first == null || key.compareTo(first) < 0)) {
+					first = key;
+				}
+			}
+		}
+		return first;
+	}
+
+	private static List<String> usernames(UserPage page) {
+		return page.getUsers().stream().map(UserSummary::getUsername).collect(Collectors.toList());
+	}
+}